@@ -3,7 +3,10 @@ package Card;
 import java.awt.Color;
 
 /**
- * A game card implementation class.
+ * A game card implementation class. Cards are immutable and interned: there
+ * is exactly one Card object for every suit and rank combination, which can
+ * be obtained using {@link #get(Suit, Rank)}. The facing of a Card is a
+ * property of its position within a CardStack.
  * 
  * @author Pyck Nicolas
  */
@@ -50,22 +53,24 @@ public class Card implements Comparable<Card> {
 		FaceDown, FaceUp;
 	};
 
-	protected Suit suit;
-	protected Rank rank;
-	protected Facing facing;
+	private static final Card[] CARDS;
 
-	/**
-	 * Card constructor with default <code>Facing.FaceUp</code> facing.
-	 * 
-	 * @param suit
-	 *            Suit of the new Card object
-	 * @param rank
-	 *            Rank of the new Card object
-	 */
-	public Card(Suit suit, Rank rank) {
-		this(suit, rank, Facing.FaceUp);
+	static {
+		Suit[] suits = Suit.values();
+		Rank[] ranks = Rank.values();
+
+		CARDS = new Card[suits.length * ranks.length];
+		for (Suit suit : suits) {
+			for (Rank rank : ranks) {
+				Card card = new Card(suit, rank);
+				CARDS[card.getId()] = card;
+			}
+		}
 	}
 
+	private final Suit suit;
+	private final Rank rank;
+
 	/**
 	 * Card constructor.
 	 * 
@@ -73,65 +78,64 @@ public class Card implements Comparable<Card> {
 	 *            Suit of the new Card object
 	 * @param rank
 	 *            Rank of the new Card object
-	 * @param facing
-	 *            Facing of the new Card object
 	 */
-	public Card(Suit suit, Rank rank, Facing facing) {
+	private Card(Suit suit, Rank rank) {
 		this.suit = suit;
 		this.rank = rank;
-		this.facing = facing;
 	}
 
 	/**
-	 * @return Rank of the Card.
+	 * Returns the Card with the specified suit and rank.
+	 * 
+	 * @param suit
+	 *            Suit of the Card
+	 * @param rank
+	 *            Rank of the Card
+	 * @return The interned Card object.
 	 */
-	public Rank getRank() {
-		return rank;
+	public static Card get(Suit suit, Rank rank) {
+		return CARDS[suit.ordinal() * Rank.values().length + rank.ordinal()];
 	}
 
 	/**
-	 * @return Suit of the Card.
+	 * Returns the Card with the specified id.
+	 * 
+	 * @param id
+	 *            Id of the Card, as returned by {@link #getId()}
+	 * @return The interned Card object.
 	 */
-	public Suit getSuit() {
-		return suit;
+	public static Card get(int id) {
+		return CARDS[id];
 	}
 
 	/**
-	 * @return Color of the card, can be either <CODE>Color.RED</CODE> or
-	 *         <CODE>Color.BLACK</CODE>.
+	 * @return Rank of the Card.
 	 */
-	public Color getColor() {
-		return suit.getColor();
+	public Rank getRank() {
+		return rank;
 	}
 
 	/**
-	 * @return Facing of the Card.
+	 * @return Suit of the Card.
 	 */
-	public Facing getFacing() {
-		return facing;
+	public Suit getSuit() {
+		return suit;
 	}
 
 	/**
-	 * @return True if the card has a facing equal to
-	 *         <code>Facing.FaceDown</code>, false if the facing equals
-	 *         <code>Facing.FaceUp</code>.
+	 * @return Id of the Card, unique for every suit and rank combination and
+	 *         ranging from <code>0</code> to <code>51</code>.
 	 */
-	public boolean isFacingDown() {
-		return facing == Facing.FaceDown;
+	public int getId() {
+		return suit.ordinal() * Rank.values().length + rank.ordinal();
 	}
 
 	/**
-	 * Flips the card over.
+	 * @return Color of the card, can be either <CODE>Color.RED</CODE> or
+	 *         <CODE>Color.BLACK</CODE>.
 	 */
-	public void flip() {
-		switch (facing) {
-		case FaceDown:
-			facing = Facing.FaceUp;
-			break;
-		case FaceUp:
-			facing = Facing.FaceDown;
-			break;
-		}
+	public Color getColor() {
+		return suit.getColor();
 	}
 
 	@Override
@@ -161,27 +165,28 @@ public class Card implements Comparable<Card> {
 			return false;
 	}
 
+	@Override
+	/**
+	 * @return Hash code of the Card, equal to its id.
+	 */
+	public int hashCode() {
+		return getId();
+	}
+
 	@Override
 	/**
 	 * @return String representation of the Card.
 	 */
 	public String toString() {
-		String text;
-		if (facing == Facing.FaceDown)
-			text = "Cover";
-		else
-			text = rank.toString() + " of " + suit.toString();
-		return text;
+		return rank.toString() + " of " + suit.toString();
 	}
 
 	/**
-	 * Deep copy clone method.
+	 * Clone method. Cards are immutable, so the Card itself is returned.
 	 * 
-	 * @return Card object identical to the original Card.
+	 * @return The original Card.
 	 */
 	public Card clone() {
-		Card newCard = new Card(suit, rank, facing);
-
-		return newCard;
+		return this;
 	}
 }
@@ -1,14 +1,38 @@
 package Card;
 
+import java.math.BigInteger;
 import java.util.Random;
 
 /**
  * A card deck implementation class that contains a full deck of Cards.
- * 
+ *
+ * Every ordering of a full deck corresponds to exactly one deal number
+ * between <code>0</code> and <code>DEAL_COUNT - 1</code>, the rank of the
+ * permutation of Card ids from the bottom to the top of the deck. The
+ * unshuffled deck has deal number <code>0</code>.
+ *
  * @author Pyck Nicolas
  */
 public class CardDeck extends CardStack {
 
+	/**
+	 * Number of Cards in a full deck.
+	 */
+	public static final int DECK_SIZE = 52;
+
+	/**
+	 * Number of distinct deals, i.e. the factorial of <code>DECK_SIZE</code>.
+	 */
+	public static final BigInteger DEAL_COUNT;
+
+	static {
+		BigInteger count = BigInteger.ONE;
+		for (int i = 2; i <= DECK_SIZE; i++) {
+			count = count.multiply(BigInteger.valueOf(i));
+		}
+		DEAL_COUNT = count;
+	}
+
 	/**
 	 * Default constructor.
 	 */
@@ -16,9 +40,44 @@ public class CardDeck extends CardStack {
 		super();
 		for (Card.Suit suit : Card.Suit.values()) {
 			for (Card.Rank rank : Card.Rank.values()) {
-				Card card = new Card(suit, rank);
-				push(card);
+				push(Card.get(suit, rank));
+			}
+		}
+	}
+
+	/**
+	 * Constructor for the deck with the specified deal number.
+	 *
+	 * @param dealNumber
+	 *            The deal number, between <code>0</code> and
+	 *            <code>DEAL_COUNT - 1</code>.
+	 */
+	public CardDeck(BigInteger dealNumber) {
+		super();
+		if (dealNumber.signum() < 0 || dealNumber.compareTo(DEAL_COUNT) >= 0)
+			throw new IllegalArgumentException("Invalid deal number: "
+					+ dealNumber);
+
+		// Extract the Lehmer code digits, last position first
+		int[] digits = new int[DECK_SIZE];
+		BigInteger number = dealNumber;
+		for (int i = DECK_SIZE - 1; i >= 0; i--) {
+			BigInteger[] division = number.divideAndRemainder(BigInteger
+					.valueOf(DECK_SIZE - i));
+			digits[i] = division[1].intValue();
+			number = division[0];
+		}
+
+		// Every digit selects one of the remaining Card ids
+		long remaining = (1L << DECK_SIZE) - 1;
+		for (int i = 0; i < DECK_SIZE; i++) {
+			long ids = remaining;
+			for (int j = 0; j < digits[i]; j++) {
+				ids &= ids - 1;
 			}
+			int id = Long.numberOfTrailingZeros(ids);
+			remaining &= ~(1L << id);
+			push(Card.get(id));
 		}
 	}
 
@@ -26,11 +85,62 @@ public class CardDeck extends CardStack {
 	 * Shuffles the deck.
 	 */
 	public void shuffle() {
+		shuffle(new Random());
+	}
+
+	/**
+	 * Shuffles the deck reproducibly: shuffling decks in the same order with
+	 * the same seed results in the same deal.
+	 *
+	 * @param seed
+	 *            The seed of the shuffle.
+	 */
+	public void shuffle(long seed) {
+		shuffle(new Random(seed));
+	}
+
+	/**
+	 * Shuffles the deck using the specified source of randomness.
+	 *
+	 * @param random
+	 *            The Random used to shuffle.
+	 */
+	public void shuffle(Random random) {
 		int index;
-		Random random = new Random();
-		for (int i = 0; i < stack.size(); i++) {
-			index = random.nextInt(stack.size() - i) + i;
-			stack.set(index, stack.set(i, stack.get(index)));
+		for (int i = 0; i < size; i++) {
+			index = random.nextInt(size - i) + i;
+			byte card = cards[index];
+			cards[index] = cards[i];
+			cards[i] = card;
+		}
+		rehash();
+	}
+
+	/**
+	 * Determines the deal number of the deck, which must still hold all of
+	 * its Cards.
+	 *
+	 * @return The deal number of the current order of the deck.
+	 */
+	public BigInteger getDealNumber() {
+		if (size != DECK_SIZE)
+			throw new IllegalStateException("Deck holds " + size + " of "
+					+ DECK_SIZE + " Cards");
+
+		long remaining = (1L << DECK_SIZE) - 1;
+		BigInteger number = BigInteger.ZERO;
+		for (int i = 0; i < DECK_SIZE; i++) {
+			int id = cards[i];
+			long bit = 1L << id;
+			if ((remaining & bit) == 0)
+				throw new IllegalStateException("Deck holds "
+						+ Card.get(id) + " twice");
+
+			int digit = Long.bitCount(remaining & (bit - 1));
+			remaining &= ~bit;
+			number = number.multiply(BigInteger.valueOf(DECK_SIZE - i)).add(
+					BigInteger.valueOf(digit));
 		}
+		return number;
 	}
 }
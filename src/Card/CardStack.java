@@ -1,18 +1,37 @@
 package Card;
 
+import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.Stack;
 
 import Rules.StackRules;
 
 /**
- * A card stack implementation class.
+ * A card stack implementation class. The CardStack stores the ids of its
+ * Cards in a byte array with the top of the stack at position
+ * <code>size - 1</code>, and keeps the facing of every position in a bitmask,
+ * bit <code>i</code> being set when the Card at position <code>i</code> has a
+ * <code>Facing.FaceDown</code> facing.
  * 
  * @author Pyck Nicolas
  */
 public class CardStack {
 
-	protected Stack<Card> stack;
+	/**
+	 * Default capacity, enough to hold a full deck of Cards.
+	 */
+	public static final int CAPACITY = 52;
+
+	/**
+	 * Maximum number of positions of which the facing can be stored.
+	 */
+	public static final int MAX_FACING = 64;
+
+	protected byte[] cards;
+	protected int size;
 	protected StackRules rules;
+	protected long hash;
+	protected long faceDown;
 
 	/**
 	 * Default constructor with <code>StackRules.NO_RULES</code> as stack rules.
@@ -28,23 +47,37 @@ public class CardStack {
 	 *            StackRules to be applied to the stack.
 	 */
 	public CardStack(StackRules rules) {
+		this(rules, CAPACITY);
+	}
+
+	/**
+	 * Constructor with specified StackRules and initial capacity.
+	 * 
+	 * @param rules
+	 *            StackRules to be applied to the stack.
+	 * @param capacity
+	 *            The number of Cards the stack can hold before it grows.
+	 */
+	protected CardStack(StackRules rules, int capacity) {
 		super();
 
-		this.stack = new Stack<Card>();
+		this.cards = new byte[capacity];
 		this.rules = rules;
 	}
 
 	/**
-	 * Deep copy clone method.
+	 * Clone method. Cards are immutable, so the clone shares the Card objects
+	 * of the original CardStack.
 	 * 
 	 * @return CardStack object identical to the original CardStack.
 	 */
 	public CardStack clone() {
-		CardStack cs = new CardStack(this.rules);
+		CardStack cs = new CardStack(this.rules, 0);
 
-		for (Card card : stack) {
-			cs.push(card.clone());
-		}
+		cs.cards = cards.clone();
+		cs.size = size;
+		cs.hash = hash;
+		cs.faceDown = faceDown;
 
 		return cs;
 	}
@@ -53,36 +86,91 @@ public class CardStack {
 	 * @return The number of Card objects contained within the CardStack.
 	 */
 	public int getSize() {
-		return stack.size();
+		return size;
 	}
 
 	/**
+	 * Returns a copy of the Card objects contained within the CardStack.
+	 * Changes to the returned collection do not affect the CardStack, use
+	 * {@link #elementAt(int)} and {@link #getSize()} to walk the Cards without
+	 * copying them.
+	 * 
 	 * @return The collection of Card objects contained within the CardStack.
 	 */
 	public Stack<Card> getCards() {
+		Stack<Card> stack = new Stack<Card>();
+		for (int i = 0; i < size; i++) {
+			stack.push(Card.get(cards[i]));
+		}
 		return stack;
 	}
 
+	/**
+	 * Returns the Zobrist hash of the CardStack, which depends on the suit,
+	 * rank, facing and position of every Card. The hash is kept up to date by
+	 * all methods of the CardStack.
+	 * 
+	 * @return The 64-bit hash of the CardStack.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Recalculates the hash after the Cards were changed directly.
+	 */
+	protected void rehash() {
+		hash = 0;
+		for (int i = 0; i < size; i++) {
+			hash ^= Zobrist.key(i, cards[i], isFacingDown(i));
+		}
+	}
+
 	/**
 	 * @return The index of the first Card object that has a
 	 *         <code>Facing.FaceUp</code> facing.
 	 */
 	public int firstFaceUp() {
-		for (int i = 0; i < stack.size(); i++) {
-			Card card = stack.get(i);
-			if (card.getFacing() == Card.Facing.FaceUp)
-				return i;
-		}
-		return -1;
+		int index = Long.numberOfTrailingZeros(~faceDown);
+		if (index < size)
+			return index;
+		else
+			return -1;
+	}
+
+	/**
+	 * @param index
+	 *            The position of the Card.
+	 * @return Facing of the Card at the specified position.
+	 */
+	public Card.Facing getFacing(int index) {
+		return isFacingDown(index) ? Card.Facing.FaceDown : Card.Facing.FaceUp;
+	}
+
+	/**
+	 * @param index
+	 *            The position of the Card.
+	 * @return <code>true</code> if the Card at the specified position has a
+	 *         <code>Facing.FaceDown</code> facing, <code>false</code>
+	 *         otherwise.
+	 */
+	public boolean isFacingDown(int index) {
+		return index < MAX_FACING && (faceDown & (1L << index)) != 0;
+	}
+
+	/**
+	 * @return The facing bitmask of the CardStack.
+	 */
+	public long getFaceDownMask() {
+		return faceDown;
 	}
 
 	/**
 	 * @return The top Card object, null if the CardStack size equals 0.
 	 */
 	public Card top() {
-		int size = stack.size();
 		if (size > 0)
-			return stack.get(size - 1);
+			return Card.get(cards[size - 1]);
 		else
 			return null;
 	}
@@ -93,17 +181,53 @@ public class CardStack {
 	 * @return The Card object located the specified index.
 	 */
 	public Card elementAt(int index) {
-		return stack.get(index);
+		return Card.get(idAt(index));
 	}
 
 	/**
-	 * Pushes a Card upon on the stack.
+	 * @param index
+	 *            The position of the Card.
+	 * @return The id of the Card located at the specified index.
+	 */
+	public int idAt(int index) {
+		if (index >= size)
+			throw new ArrayIndexOutOfBoundsException(index + " >= " + size);
+		return cards[index];
+	}
+
+	/**
+	 * Pushes a Card with a <code>Facing.FaceUp</code> facing upon on the
+	 * stack.
 	 * 
 	 * @param card
 	 *            The Card to be pushed onto the CardStack.
 	 */
 	public void push(Card card) {
-		stack.push(card);
+		push(card.getId(), false);
+	}
+
+	/**
+	 * Pushes a Card upon on the stack.
+	 * 
+	 * @param card
+	 *            The Card to be pushed onto the CardStack.
+	 * @param facing
+	 *            The facing of the Card.
+	 */
+	public void push(Card card, Card.Facing facing) {
+		push(card.getId(), facing == Card.Facing.FaceDown);
+	}
+
+	private void push(int id, boolean facingDown) {
+		if (facingDown) {
+			checkFacing(size);
+			faceDown |= 1L << size;
+		}
+		if (size == cards.length)
+			cards = Arrays.copyOf(cards, Math.max(CAPACITY, size * 2));
+
+		hash ^= Zobrist.key(size, id, facingDown);
+		cards[size++] = (byte) id;
 	}
 
 	/**
@@ -113,9 +237,23 @@ public class CardStack {
 	 *            The CardStack to be pushed onto the CardStack.
 	 */
 	public void push(CardStack cs) {
-		while (!cs.isEmpty()) {
-			push(cs.stack.remove(0));
+		int n = cs.size;
+		if (cs.faceDown != 0)
+			checkFacing(size + 63 - Long.numberOfLeadingZeros(cs.faceDown));
+		if (size + n > cards.length)
+			cards = Arrays.copyOf(cards, Math.max(CAPACITY, (size + n) * 2));
+
+		System.arraycopy(cs.cards, 0, cards, size, n);
+		if (cs.faceDown != 0)
+			faceDown |= cs.faceDown << size;
+		for (int i = size; i < size + n; i++) {
+			hash ^= Zobrist.key(i, cards[i], isFacingDown(i));
 		}
+		size += n;
+
+		cs.size = 0;
+		cs.hash = 0;
+		cs.faceDown = 0;
 	}
 
 	/**
@@ -144,8 +282,7 @@ public class CardStack {
 	 */
 	public boolean tryPush(CardStack cs) {
 		if (rules.validMove(cs, this)) {
-			while (!cs.isEmpty())
-				push(cs);
+			push(cs);
 			return true;
 		} else
 			return false;
@@ -157,9 +294,33 @@ public class CardStack {
 	 * @return The top Card of the CardStack.
 	 */
 	public Card pop() {
-		Card c = stack.pop();
+		if (size == 0)
+			throw new EmptyStackException();
+
+		int index = --size;
+		boolean facingDown = isFacingDown(index);
+		hash ^= Zobrist.key(index, cards[index], facingDown);
+		if (facingDown)
+			faceDown &= ~(1L << index);
 
-		return c;
+		return Card.get(cards[index]);
+	}
+
+	/**
+	 * Flips the Card at the specified position.
+	 * 
+	 * @param index
+	 *            The position of the Card to be flipped.
+	 */
+	public void flip(int index) {
+		int id = idAt(index);
+		boolean facingDown = isFacingDown(index);
+		if (!facingDown)
+			checkFacing(index);
+
+		hash ^= Zobrist.key(index, id, facingDown)
+				^ Zobrist.key(index, id, !facingDown);
+		faceDown ^= 1L << index;
 	}
 
 	/**
@@ -172,13 +333,23 @@ public class CardStack {
 	public CardStack pop(int n) {
 		CardStack cs = null;
 		if (n > 0 && n <= cardCount()) {
-			cs = new CardStack(rules);
+			cs = new CardStack(rules, n);
 
-			for (int i = n; i > 0 && !isEmpty(); i--) {
-				cs.push(pop());
+			int start = size - n;
+			System.arraycopy(cards, start, cs.cards, 0, n);
+			if (start < MAX_FACING)
+				cs.faceDown = faceDown >>> start;
+
+			for (int i = 0; i < n; i++) {
+				boolean facingDown = cs.isFacingDown(i);
+				hash ^= Zobrist.key(start + i, cs.cards[i], facingDown);
+				cs.hash ^= Zobrist.key(i, cs.cards[i], facingDown);
 			}
 
-			cs.reverse();
+			cs.size = n;
+			size = start;
+			if (start < MAX_FACING)
+				faceDown &= (1L << start) - 1;
 		}
 
 		return cs;
@@ -193,16 +364,31 @@ public class CardStack {
 	 * @return A stack containing the Cards popped.
 	 */
 	public CardStack pop(Card card) {
-		int index = stack.indexOf(card);
+		int index = indexOf(card);
+
+		return pop(size - index);
+	}
 
-		return pop(stack.size() - index);
+	private int indexOf(Card card) {
+		int id = card.getId();
+		for (int i = 0; i < size; i++) {
+			if (cards[i] == id)
+				return i;
+		}
+		return -1;
+	}
+
+	private static void checkFacing(int index) {
+		if (index >= MAX_FACING)
+			throw new IllegalArgumentException(
+					"Face down Card beyond position " + MAX_FACING);
 	}
 
 	/**
 	 * @return The number of Cards contained within the stack.
 	 */
 	public int cardCount() {
-		return stack.size();
+		return size;
 	}
 
 	/**
@@ -214,7 +400,7 @@ public class CardStack {
 	 *         <code>false</code> otherwise.
 	 */
 	public boolean contains(Card c) {
-		return stack.contains(c);
+		return indexOf(c) >= 0;
 	}
 
 	/**
@@ -224,7 +410,7 @@ public class CardStack {
 	 *         <code>false</code>.
 	 */
 	public boolean isEmpty() {
-		return stack.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -255,23 +441,54 @@ public class CardStack {
 	 *         otherwise <code>false</code>.
 	 */
 	public boolean containsCovered() {
-		for (Card card : stack) {
-			if (card.getFacing() == Card.Facing.FaceDown)
-				return true;
-		}
-		return false;
+		return faceDown != 0;
 	}
 
 	/**
 	 * Reverses the Cards contained within the CardStack
 	 */
 	public void reverse() {
-		CardStack newStack = new CardStack(rules);
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			byte card = cards[i];
+			cards[i] = cards[j];
+			cards[j] = card;
+		}
+
+		if (faceDown != 0) {
+			checkFacing(size - 1);
+			faceDown = Long.reverse(faceDown) >>> (64 - size);
+		}
+
+		rehash();
+	}
+
+	@Override
+	/**
+	 * @param target Target object with which the current CardStack is to be compared.
+	 * @return <code>true</code> if both CardStacks contain the same Cards with
+	 * 		   the same facing in the same order, <code>false</code> otherwise.
+	 */
+	public boolean equals(Object target) {
+		if (!(target instanceof CardStack))
+			return false;
+
+		CardStack cs = (CardStack) target;
+		if (hash != cs.hash || faceDown != cs.faceDown || size != cs.size)
+			return false;
 
-		while (!this.isEmpty())
-			newStack.push(pop());
+		for (int i = 0; i < size; i++) {
+			if (cards[i] != cs.cards[i])
+				return false;
+		}
+		return true;
+	}
 
-		stack = newStack.stack;
+	@Override
+	/**
+	 * @return Hash code of the CardStack, derived from its Zobrist hash.
+	 */
+	public int hashCode() {
+		return (int) (hash ^ (hash >>> 32));
 	}
 
 	@Override
@@ -279,7 +496,13 @@ public class CardStack {
 	 * @return String representation of the CardStack.
 	 */
 	public String toString() {
-		return stack.toString();
+		StringBuilder text = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				text.append(", ");
+			text.append(Card.get(cards[i]));
+		}
+		return text.append(']').toString();
 	}
 
 }
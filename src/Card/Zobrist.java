@@ -0,0 +1,42 @@
+package Card;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys for hashing CardStacks. Every combination of stack position,
+ * Card and facing has its own random key and a stack hashes to the XOR of the
+ * keys of its Cards, so pushing, popping or flipping a Card updates the hash
+ * in constant time.
+ *
+ * @author Pyck Nicolas
+ */
+class Zobrist {
+
+	private static final int POSITIONS = 52;
+	private static final int CARDS = 52;
+
+	private static final long[] KEYS;
+
+	static {
+		Random random = new Random(0x2545F4914F6CDD1DL);
+
+		KEYS = new long[POSITIONS * CARDS * 2];
+		for (int i = 0; i < KEYS.length; i++) {
+			KEYS[i] = random.nextLong();
+		}
+	}
+
+	/**
+	 * @param index
+	 *            The position of the Card within its CardStack.
+	 * @param card
+	 *            The id of the Card.
+	 * @param facingDown
+	 *            Whether the Card has a <code>Facing.FaceDown</code> facing.
+	 * @return The Zobrist key of the Card at the specified position.
+	 */
+	static long key(int index, int card, boolean facingDown) {
+		return KEYS[((index % POSITIONS) * CARDS + card) * 2
+				+ (facingDown ? 1 : 0)];
+	}
+}
@@ -1,25 +1,31 @@
 package NotSoEasy;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.RenderingHints;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Stack;
 
 import javax.swing.JDialog;
 import javax.swing.JPanel;
 import javax.swing.event.MouseInputAdapter;
 
+import Solver.AutoCompleter;
 import State.GameState;
+import State.Move;
+import State.MoveSequence;
+import State.StateChange;
 import State.StateManager;
 
 import Card.Card;
@@ -35,6 +41,21 @@ public class GameTable extends JPanel implements Observer {
 	private CardStack dragStack;
 	private CardStack sourceStack;
 
+	private Move hint;
+	private boolean playable = true;
+
+	/**
+	 * The background and all stacks without the dragged Cards, rendered once
+	 * when a drag starts so a drag only redraws the dragged Cards.
+	 */
+	private BufferedImage boardLayer;
+	private boolean boardLayerValid;
+
+	/**
+	 * The bounds of every stack as last painted, by stack index.
+	 */
+	private Rectangle[] stackBounds;
+
 	private Point dragStackLoc;
 	private Point[] playStackLoc;
 	private Point[] spareStackLoc;
@@ -58,6 +79,8 @@ public class GameTable extends JPanel implements Observer {
 
 		playStackLoc = new Point[sm.getCurrentState().getPlayStacks().length];
 		spareStackLoc = new Point[sm.getCurrentState().getPlayStacks().length];
+		stackBounds = new Rectangle[playStackLoc.length
+				+ sm.getCurrentState().getSpareStacks().length];
 
 		im = ImageManager.getInstance();
 		setCardWidth(im.getImage("Cover").getWidth());
@@ -100,6 +123,7 @@ public class GameTable extends JPanel implements Observer {
 					* (cardSize.height + STACK_SPREAD));
 		}
 		
+		boardLayerValid = false;
 		repaint();
 	}
 
@@ -112,6 +136,7 @@ public class GameTable extends JPanel implements Observer {
 
 		cardSize = new Dimension((int) cardWidth, (int) cardHeight);
 		FACEUP_SPREAD = (cardSize.height * 30) / 100;
+		im.setCardSize(cardSize);
 
 		// Set the minimum and preferred window size
 		Dimension minWindowSize = new Dimension(cardSize.width * 9
@@ -123,43 +148,103 @@ public class GameTable extends JPanel implements Observer {
 	}
 
 	public void doMove() {
-		boolean validMove = false;
+		Move move = null;
+		Rectangle dragRect = null;
 		if (sourceStack != null) {
+			GameState currentState = sm.getCurrentState();
+			int sourceIndex = Move.indexOf(currentState, sourceStack);
+
 			if (dragStack != null) {
-				Rectangle dragRect = getRectangle(dragStack, dragStackLoc);
+				dragRect = getRectangle(dragStack, dragStackLoc);
+				int count = dragStack.getSize();
 
-				CardStack[] playStacks = sm.getCurrentState().getPlayStacks();
+				CardStack[] playStacks = currentState.getPlayStacks();
 				for (int i = 0; i < playStacks.length; i++) {
 					Rectangle targetRect = getRectangle(playStacks[i],
 							playStackLoc[i]);
 					if (sourceStack != playStacks[i]
 							&& targetRect.intersects(dragRect)
 							&& playStacks[i].tryPush(dragStack)) {
-						validMove = true;
+						move = new Move(sourceIndex, i, count);
 						break;
 					}
 				}
 
-				if (!validMove)
+				if (move == null)
 					sourceStack.push(dragStack);
 			} else {
-				Card lastCard = sourceStack.top();
-				if (lastCard != null && lastCard.isFacingDown()) {
-					validMove = true;
-					lastCard.flip();
+				int lastIndex = sourceStack.getSize() - 1;
+				if (lastIndex >= 0 && sourceStack.isFacingDown(lastIndex)) {
+					sourceStack.flip(lastIndex);
+					move = Move.flip(sourceIndex);
 				}
 			}
 
 		}
 
-		if (validMove) {
-			sm.addState();
+		if (move != null) {
+			// The StateManager only reports the stacks, not the dropped Cards
+			if (dragRect != null)
+				repaint(dragRect);
+
+			boolean wasPlayable = playable;
+			sm.addState(move);
+			autoComplete();
 			checkEndOfGame();
+
+			if (wasPlayable && !playable) {
+				JDialog deadEndDialog = new BobonneDialog(this, "Dead End",
+						"I'm afraid there is no way out of this one anymore, dear.");
+				deadEndDialog.setVisible(true);
+			}
 		} else {
 			repaint();
 		}
 	}
 
+	/**
+	 * Plays all remaining Moves at once if the current GameState is trivially
+	 * won, as a single entry in the history of the StateManager.
+	 */
+	private void autoComplete() {
+		GameState currentState = sm.getCurrentState();
+		if (currentState.isCompleted())
+			return;
+
+		List<Move> moves = AutoCompleter.complete(currentState);
+		if (moves != null) {
+			Move sequence = new MoveSequence(moves);
+			sequence.apply(currentState);
+			sm.addState(sequence);
+		}
+	}
+
+	/**
+	 * Returns the Cards being dragged to their source stack, so the current
+	 * GameState is complete before the StateManager changes it.
+	 */
+	public void cancelDrag() {
+		if (sourceStack != null && dragStack != null) {
+			sourceStack.push(dragStack);
+			repaint();
+		}
+		sourceStack = null;
+		dragStack = null;
+	}
+
+	/**
+	 * Highlights a Move suggested for the current GameState until the
+	 * GameState changes.
+	 * 
+	 * @param hint
+	 *            The Move to be highlighted, <code>null</code> to remove the
+	 *            highlight.
+	 */
+	public void setHint(Move hint) {
+		this.hint = hint;
+		repaint();
+	}
+
 	public void checkEndOfGame() {
 		if (sm.getCurrentState().isCompleted()) {
 			JDialog endOfGameDialog = new BobonneDialog(this,
@@ -169,15 +254,95 @@ public class GameTable extends JPanel implements Observer {
 		}
 	}
 
+	@Override
+	public boolean imageUpdate(Image img, int infoflags, int x, int y,
+			int w, int h) {
+		// A card face loaded during a drag replaces its placeholder in the
+		// board layer
+		boardLayerValid = false;
+		if (dragStack != null)
+			renderBoardLayer();
+
+		return super.imageUpdate(img, infoflags, x, y, w, h);
+	}
+
 	@Override
 	public void update(Observable stateManager, Object arg) {
-		repaint();
+		boolean hadHint = hint != null;
+		hint = null;
+		playable = sm.getCurrentState().isPlayable();
+		boardLayerValid = false;
+
+		if (hadHint || !(arg instanceof StateChange)
+				|| ((StateChange) arg).isFull()) {
+			repaint();
+			return;
+		}
+
+		// Repaint the changed stacks both as last painted and as they are now,
+		// the rest of the table is left as it is on the screen
+		StateChange change = (StateChange) arg;
+		GameState currentState = sm.getCurrentState();
+		for (int i = 0; i < stackBounds.length; i++) {
+			if (!change.isChanged(i))
+				continue;
+
+			Rectangle rect = getRectangle(Move.getStack(currentState, i),
+					getStackLoc(i));
+			if (stackBounds[i] != null)
+				rect.add(stackBounds[i]);
+			repaint(rect);
+		}
 	}
 
 	@Override
 	public void paintComponent(Graphics g) {
 		super.paintComponents(g);
 
+		if (dragStack != null && boardLayerValid) {
+			// Only the dragged Cards move during a drag
+			g.drawImage(boardLayer, 0, 0, null);
+		} else {
+			paintBoard(g);
+		}
+
+		// Draw the hint
+		if (hint != null && dragStack == null) {
+			paintHint(g);
+		}
+
+		// Draw the dragstack
+		if (dragStack != null && !dragStack.isEmpty()) {
+			paintComponent(g, dragStack, dragStackLoc);
+		}
+	}
+
+	/**
+	 * Renders the background and all stacks into the board layer.
+	 */
+	private void renderBoardLayer() {
+		int width = getWidth();
+		int height = getHeight();
+		if (width <= 0 || height <= 0)
+			return;
+
+		if (boardLayer == null || boardLayer.getWidth() != width
+				|| boardLayer.getHeight() != height) {
+			GraphicsConfiguration gc = getGraphicsConfiguration();
+			if (gc != null)
+				boardLayer = gc.createCompatibleImage(width, height);
+			else
+				boardLayer = new BufferedImage(width, height,
+						BufferedImage.TYPE_INT_RGB);
+		}
+
+		Graphics g = boardLayer.createGraphics();
+		paintBoard(g);
+		g.dispose();
+		boardLayerValid = true;
+	}
+
+	private void paintBoard(Graphics g) {
 		Dimension size = this.getSize();
 
 		// Draw the background
@@ -185,22 +350,46 @@ public class GameTable extends JPanel implements Observer {
 				null);
 
 		GameState currentState = sm.getCurrentState();
+		Rectangle clip = g.getClipBounds();
 
-		// Draw the playstacks
-		for (int i = 0; i < currentState.getPlayStacks().length; i++) {
-			paintComponent(g, currentState.getPlayStacks()[i], playStackLoc[i]);
-		}
+		// Draw the playstacks and sparestacks, skipping those outside the clip
+		for (int i = 0; i < stackBounds.length; i++) {
+			CardStack stack = Move.getStack(currentState, i);
+			Point loc = getStackLoc(i);
+			stackBounds[i] = getRectangle(stack, loc);
 
-		// Draw the sparestacks
-		for (int i = 0; i < currentState.getSpareStacks().length; i++) {
-			paintComponent(g, currentState.getSpareStacks()[i],
-					spareStackLoc[i]);
+			if (clip == null || clip.intersects(stackBounds[i]))
+				paintComponent(g, stack, loc);
 		}
+	}
 
-		// Draw the dragstack
-		if (dragStack != null && !dragStack.isEmpty()) {
-			paintComponent(g, dragStack, dragStackLoc);
+	private void paintHint(Graphics g) {
+		GameState currentState = sm.getCurrentState();
+
+		CardStack source = Move.getStack(currentState, hint.getSource());
+		Point sourceLoc = getStackLoc(hint.getSource());
+		Rectangle sourceRect = getRectangle(source, sourceLoc,
+				source.getSize() - Math.max(hint.getCount(), 1));
+		sourceRect.add(getRectangle(source, sourceLoc, source.getSize() - 1));
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setColor(Color.YELLOW);
+		g2.setStroke(new BasicStroke(3));
+		g2.draw(sourceRect);
+
+		if (!hint.isFlip()) {
+			CardStack target = Move.getStack(currentState, hint.getTarget());
+			g2.draw(getRectangle(target, getStackLoc(hint.getTarget()),
+					Math.max(target.getSize() - 1, 0)));
 		}
+		g2.dispose();
+	}
+
+	private Point getStackLoc(int index) {
+		if (index < playStackLoc.length)
+			return playStackLoc[index];
+		else
+			return spareStackLoc[index - playStackLoc.length];
 	}
 
 	private void paintComponent(Graphics g, CardStack cs, Point p) {
@@ -211,13 +400,12 @@ public class GameTable extends JPanel implements Observer {
 			g.drawRect(p.x, p.y, cardSize.width - 1, cardSize.height - 1);
 		} else {
 			Point q = p;
-			Stack<Card> cards = cs.getCards();
-			for (int i = 0; i < cards.size(); i++) {
-				Card currentCard = cards.get(i);
-				paintComponent(g, currentCard, q);
+			for (int i = 0; i < cs.getSize(); i++) {
+				Card.Facing facing = cs.getFacing(i);
+				paintComponent(g, cs.elementAt(i), facing, q);
 
 				int spread = 0;
-				switch (currentCard.getFacing()) {
+				switch (facing) {
 				case FaceDown:
 					spread = FACEDOWN_SPREAD;
 					break;
@@ -231,19 +419,18 @@ public class GameTable extends JPanel implements Observer {
 		}
 	}
 
-	private void paintComponent(Graphics g, Card c, Point p) {
-		Graphics2D g2 = (Graphics2D) g;
-		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g2.setRenderingHint(RenderingHints.KEY_RENDERING,
-				RenderingHints.VALUE_RENDER_QUALITY);
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-				RenderingHints.VALUE_ANTIALIAS_ON);
+	private void paintComponent(Graphics g, Card c, Card.Facing facing,
+			Point p) {
+		String imageName;
+		if (facing == Card.Facing.FaceDown)
+			imageName = "Cover";
+		else
+			imageName = c.toString();
 
-		BufferedImage cardImage = im.getImage(c.toString());
+		// The images are already scaled to the card size
+		BufferedImage cardImage = im.getScaledImage(imageName, this);
 		try {
-			g2.drawImage(cardImage, p.x, p.y, cardSize.width, cardSize.height,
-					null);
+			g.drawImage(cardImage, p.x, p.y, null);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -253,9 +440,8 @@ public class GameTable extends JPanel implements Observer {
 		int width = cardSize.width;
 		int height = cardSize.height;
 
-		Stack<Card> cards = cs.getCards();
-		for (int i = 1; i < cards.size(); i++) {
-			switch (cards.get(i - 1).getFacing()) {
+		for (int i = 1; i < cs.getSize(); i++) {
+			switch (cs.getFacing(i - 1)) {
 			case FaceDown:
 				height += FACEDOWN_SPREAD;
 				break;
@@ -273,9 +459,8 @@ public class GameTable extends JPanel implements Observer {
 
 	private Rectangle getRectangle(CardStack cs, Point p, int index) {
 		Point q = new Point(p.x, p.y);
-		Stack<Card> cards = cs.getCards();
 		for (int i = 0; i < index; i++) {
-			switch (cards.get(i).getFacing()) {
+			switch (cs.getFacing(i)) {
 			case FaceDown:
 				q.y += FACEDOWN_SPREAD;
 				break;
@@ -327,12 +512,13 @@ public class GameTable extends JPanel implements Observer {
 					counter++;
 					Rectangle cardRect = getRectangle(cs, p, i);
 
-					if (!cs.getCards().get(i).isFacingDown()
+					if (!cs.isFacingDown(i)
 							&& cardRect.contains(mouseLoc)) {
 						dragStackLoc = new Point(cardRect.x, cardRect.y);
 						relativeDragLoc = new Point(cardRect.x - mouseLoc.x,
 								cardRect.y - mouseLoc.y);
 						dragStack = cs.pop(counter);
+						renderBoardLayer();
 						break;
 					}
 				}
@@ -0,0 +1,380 @@
+package NotSoEasy;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent cache of processed images in a directory, so later launches
+ * skip decoding and compositing. Images are stored as raw pixels of an
+ * integer BufferedImage type, keyed by the checksum of their resource and the
+ * size they were scaled to.
+ *
+ * A cache file starts with a header (magic, version, entry count), followed
+ * by an index of 32 byte entries (key, image type, width, height, offset) and
+ * the pixel data, all in native byte order. The file is memory-mapped and
+ * the pixels of an image are copied straight from the mapping into its
+ * raster. A file written with another byte order or version is ignored and
+ * replaced.
+ *
+ * New images are collected in memory until {@link #flush()} writes them,
+ * together with the images of the current file, to a file of the next
+ * generation. A mapped file is never replaced, as Java cannot unmap it and
+ * some platforms refuse to replace a mapped file, so older generations are
+ * only deleted when the next ImageCache opens the directory.
+ *
+ * @author Pyck Nicolas
+ */
+class ImageCache {
+
+	private static final int MAGIC = 0x4E534943;
+
+	/**
+	 * Version of the file format and of the image processing, to be bumped
+	 * whenever either changes.
+	 */
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 12;
+	private static final int ENTRY_SIZE = 32;
+
+	private static final String PREFIX = "images-";
+	private static final String SUFFIX = ".cache";
+
+	private final File directory;
+
+	/**
+	 * The newest generation found or written, <code>null</code> if there is
+	 * none yet.
+	 */
+	private Generation current;
+	private int lastNumber;
+	private final Map<Long, BufferedImage> added = new LinkedHashMap<>();
+
+	/**
+	 * Constructor opening the newest cache file of a directory, if any, and
+	 * deleting all older ones.
+	 *
+	 * @param directory
+	 *            The cache directory.
+	 */
+	ImageCache(File directory) {
+		this.directory = directory;
+
+		File[] files = directory.listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(PREFIX);
+			}
+		});
+		if (files == null)
+			return;
+
+		File newest = null;
+		for (File file : files) {
+			int number = number(file);
+			if (number > lastNumber) {
+				lastNumber = number;
+				newest = file;
+			}
+		}
+
+		// Older generations and temporary files left by an interrupted flush
+		for (File file : files) {
+			if (file != newest)
+				file.delete();
+		}
+
+		if (newest != null) {
+			try {
+				current = new Generation(newest);
+			} catch (IOException e) {
+				current = null;
+			}
+		}
+	}
+
+	/**
+	 * @return The generation number of a cache file, <code>0</code> if it is
+	 *         not a cache file.
+	 */
+	private static int number(File file) {
+		String name = file.getName();
+		if (!name.endsWith(SUFFIX))
+			return 0;
+
+		try {
+			return Math.max(0, Integer.parseInt(name.substring(
+					PREFIX.length(), name.length() - SUFFIX.length())));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Creates the cache key of an image.
+	 *
+	 * @param checksum
+	 *            The 32-bit checksum of the image resource.
+	 * @param width
+	 *            The width the image was scaled to, <code>0</code> if it was
+	 *            not scaled.
+	 * @param height
+	 *            The height the image was scaled to, <code>0</code> if it was
+	 *            not scaled.
+	 * @return The cache key.
+	 */
+	static long key(long checksum, int width, int height) {
+		return (long) width << 48 | (long) (height & 0xFFFF) << 32
+				| checksum & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns a cached image.
+	 *
+	 * @param key
+	 *            The cache key of the image.
+	 * @return A new BufferedImage holding the cached pixels,
+	 *         <code>null</code> if the image is not cached.
+	 */
+	BufferedImage get(long key) {
+		Generation generation;
+		synchronized (this) {
+			BufferedImage image = added.get(key);
+			if (image != null)
+				return image;
+			generation = current;
+		}
+
+		// A generation never changes, so its pixels are read without the lock
+		if (generation == null)
+			return null;
+		Entry entry = generation.entries.get(key);
+		if (entry == null)
+			return null;
+
+		int[] pixels = new int[entry.width * entry.height];
+		ByteBuffer bytes = generation.buffer.duplicate().order(
+				ByteOrder.nativeOrder());
+		bytes.position((int) entry.offset);
+		bytes.asIntBuffer().get(pixels);
+
+		// Copied into the raster rather than wrapped, so the image stays
+		// eligible for hardware acceleration
+		BufferedImage image = new BufferedImage(entry.width, entry.height,
+				entry.type);
+		image.getRaster().setDataElements(0, 0, entry.width, entry.height,
+				pixels);
+		return image;
+	}
+
+	/**
+	 * Adds an image to the cache, to be written by the next
+	 * {@link #flush()}. Images that do not store their pixels as integers
+	 * are not cached.
+	 *
+	 * @param key
+	 *            The cache key of the image.
+	 * @param image
+	 *            The image to be cached.
+	 */
+	synchronized void put(long key, BufferedImage image) {
+		if (isCacheable(image)
+				&& (current == null || !current.entries.containsKey(key)))
+			added.put(key, image);
+	}
+
+	/**
+	 * @param image
+	 *            The image to be examined.
+	 * @return <code>true</code> if the image stores its pixels as integers,
+	 *         <code>false</code> otherwise.
+	 */
+	static boolean isCacheable(BufferedImage image) {
+		int type = image.getType();
+		return isIntType(type)
+				&& image.getRaster().getDataBuffer() instanceof DataBufferInt;
+	}
+
+	private static boolean isIntType(int type) {
+		return type == BufferedImage.TYPE_INT_ARGB
+				|| type == BufferedImage.TYPE_INT_ARGB_PRE
+				|| type == BufferedImage.TYPE_INT_RGB;
+	}
+
+	/**
+	 * Writes the cached images to a cache file of the next generation if any
+	 * image was added. Flushes must not run concurrently, while
+	 * {@link #get(long)} and {@link #put(long, BufferedImage)} only wait for
+	 * the flush to take and to publish its snapshot.
+	 */
+	void flush() {
+		Generation previous;
+		Map<Long, BufferedImage> images;
+		int number;
+		synchronized (this) {
+			if (added.isEmpty())
+				return;
+			previous = current;
+			images = new LinkedHashMap<>(added);
+			number = lastNumber + 1;
+		}
+
+		File file = new File(directory, PREFIX + number + SUFFIX);
+		File temp = null;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Cannot create directory " + directory);
+			temp = File.createTempFile(PREFIX, ".tmp", directory);
+
+			try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+					FileChannel channel = raf.getChannel()) {
+				write(channel, previous, images);
+			}
+
+			// The target is new, so no mapped file is ever replaced
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+			temp = null;
+
+			Generation generation = new Generation(file);
+			synchronized (this) {
+				current = generation;
+				lastNumber = number;
+				added.keySet().removeAll(images.keySet());
+			}
+		} catch (IOException e) {
+			System.err.println("Error while writing image cache: " + file);
+			e.printStackTrace();
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	private static void write(FileChannel channel, Generation previous,
+			Map<Long, BufferedImage> images) throws IOException {
+		List<Long> keys = new ArrayList<>();
+		if (previous != null)
+			keys.addAll(previous.entries.keySet());
+		keys.addAll(images.keySet());
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + keys.size()
+				* ENTRY_SIZE);
+		header.order(ByteOrder.nativeOrder());
+		header.putInt(MAGIC).putInt(VERSION).putInt(keys.size());
+
+		long offset = header.capacity();
+		for (long key : keys) {
+			BufferedImage image = images.get(key);
+			Entry entry = image != null ? new Entry(image.getType(),
+					image.getWidth(), image.getHeight(), 0) : previous.entries
+					.get(key);
+
+			header.putLong(key).putInt(entry.type).putInt(entry.width)
+					.putInt(entry.height).putInt(0).putLong(offset);
+			offset += 4L * entry.width * entry.height;
+		}
+		header.flip();
+		channel.write(header);
+
+		for (long key : keys) {
+			BufferedImage image = images.get(key);
+			ByteBuffer pixels;
+			if (image != null) {
+				int width = image.getWidth();
+				int height = image.getHeight();
+				pixels = ByteBuffer.allocate(4 * width * height);
+				pixels.order(ByteOrder.nativeOrder());
+				IntBuffer ints = pixels.asIntBuffer();
+				ints.put((int[]) image.getRaster().getDataElements(0, 0,
+						width, height, null));
+			} else {
+				Entry entry = previous.entries.get(key);
+				pixels = previous.buffer.duplicate();
+				pixels.position((int) entry.offset);
+				pixels.limit((int) (entry.offset + 4L * entry.width
+						* entry.height));
+			}
+
+			while (pixels.hasRemaining()) {
+				channel.write(pixels);
+			}
+		}
+	}
+
+	/**
+	 * A memory-mapped cache file and its index, never changed once opened.
+	 */
+	private static class Generation {
+
+		final MappedByteBuffer buffer;
+		final Map<Long, Entry> entries = new HashMap<>();
+
+		Generation(File file) throws IOException {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+					FileChannel channel = raf.getChannel()) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			}
+			buffer.order(ByteOrder.nativeOrder());
+
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != VERSION)
+				throw new IOException("Invalid image cache: " + file);
+
+			int count = buffer.getInt(8);
+			if (count < 0
+					|| HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.limit())
+				throw new IOException("Invalid image cache: " + file);
+
+			for (int i = 0; i < count; i++) {
+				int position = HEADER_SIZE + i * ENTRY_SIZE;
+				Entry entry = new Entry(buffer.getInt(position + 8),
+						buffer.getInt(position + 12),
+						buffer.getInt(position + 16),
+						buffer.getLong(position + 24));
+				if (!isIntType(entry.type) || entry.offset < 0
+						|| entry.width <= 0 || entry.height <= 0
+						|| entry.offset + 4L * entry.width * entry.height > buffer
+								.limit())
+					throw new IOException("Invalid image cache: " + file);
+				entries.put(buffer.getLong(position), entry);
+			}
+		}
+	}
+
+	/**
+	 * The index entry of a cached image.
+	 */
+	private static class Entry {
+
+		final int type;
+		final int width;
+		final int height;
+		final long offset;
+
+		Entry(int type, int width, int height, long offset) {
+			this.type = type;
+			this.width = width;
+			this.height = height;
+			this.offset = offset;
+		}
+	}
+}
@@ -2,23 +2,50 @@ package NotSoEasy;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
 
 import Card.Card;
 import Card.Card.Rank;
 import Card.Card.Suit;
 
 /**
- * An image manager implementation class
+ * An image manager implementation class. All images are decoded in parallel
+ * on background threads, the background and the card cover first, so the
+ * window can appear before the card faces are ready. Processed and scaled
+ * images are kept in an ImageCache in the home directory of the user, so
+ * later launches neither decode nor composite them again.
  * 
  * @author Pyck Nicolas
  * 
@@ -27,13 +54,49 @@ public class ImageManager {
 
 	private static ImageManager instance;
 
-	private HashMap<String, BufferedImage> images;
+	private static final Color CARD_ROUND_COLOR = new Color(155, 161, 157);
+
+	private static final File CACHE_DIRECTORY = new File(
+			System.getProperty("user.home"), ".notsoeasy");
+
+	private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ImageManager");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private HashMap<String, Future<BufferedImage>> images;
+	private Map<String, Long> checksums;
+	private int cardImageCount;
+
+	private ImageCache cache;
+	private ExecutorService cacheWriter;
+
+	private HashMap<String, BufferedImage> scaledImages;
+	private BufferedImage placeholder;
+	private Dimension cardSize;
+
+	/**
+	 * The observers that were handed the placeholder, only accessed on the
+	 * event dispatch thread.
+	 */
+	private List<ImageObserver> waitingObservers;
 
 	/**
 	 * Private ImageManager constructor.
 	 */
 	private ImageManager() {
 		images = new HashMap<>();
+		checksums = new ConcurrentHashMap<>();
+		scaledImages = new HashMap<>();
+		waitingObservers = new ArrayList<>();
+
+		cache = new ImageCache(CACHE_DIRECTORY);
+		cacheWriter = Executors.newSingleThreadExecutor(DAEMON_THREADS);
 
 		loadImages();
 	}
@@ -51,46 +114,169 @@ public class ImageManager {
 	}
 
 	/**
-	 * Loads all necessary images.
+	 * Starts loading all necessary images on a pool of background threads.
 	 */
 	private void loadImages() {
 		Color coverRoundColor = new Color(120, 37, 40);
-		Color cardRoundColor = new Color(155, 161, 157);
 
-		Map<String, Color> imageEntries = new HashMap<>();
+		// The images are loaded in this order, the background and the cover
+		// are needed for the first paint
+		Map<String, Color> imageEntries = new LinkedHashMap<>();
 		imageEntries.put("Background.jpg", null);
+		imageEntries.put("Cover.png", coverRoundColor);
 		imageEntries.put("Bobonne.png", null);
 		imageEntries.put("Silenzio.png", null);
-		imageEntries.put("Cover.png", coverRoundColor);
 
 		for (Suit suit : Suit.values()) {
 			for (Rank rank : Rank.values()) {
 				imageEntries.put(rank.name() + " of " + suit.name() + ".png",
-						cardRoundColor);
+						CARD_ROUND_COLOR);
 			}
 		}
 
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors(), DAEMON_THREADS);
+		final AtomicInteger loading = new AtomicInteger(imageEntries.size());
+
 		// Load the images using the information from imageEntries
 		String basePath = "/Resources/";
 		for (Entry<String, Color> imageEntry : imageEntries.entrySet()) {
-			URL imageURL = Card.class.getResource(basePath
+			final String name = imageEntry.getKey().split("\\.")[0];
+			final URL imageURL = Card.class.getResource(basePath
 					+ imageEntry.getKey());
-			try {
-				BufferedImage image;
-				if (imageEntry.getValue() != null)
-					image = makeRoundedCorner(ImageIO.read(imageURL),
-							imageEntry.getValue());
-				else
-					image = ImageIO.read(imageURL);
-				images.put(imageEntry.getKey().split("\\.")[0], image);
-			} catch (IOException e) {
-				System.err.println("Error while loading image: "
-						+ imageURL.toString());
-				e.printStackTrace();
+			final Color roundColor = imageEntry.getValue();
+
+			FutureTask<BufferedImage> image = new FutureTask<BufferedImage>(
+					new Callable<BufferedImage>() {
+
+						@Override
+						public BufferedImage call() {
+							return loadImage(name, imageURL, roundColor);
+						}
+					}) {
+
+				@Override
+				protected void done() {
+					imageLoaded();
+					if (loading.decrementAndGet() == 0)
+						flushCache();
+				}
+			};
+			executor.execute(image);
+			images.put(name, image);
+			if (roundColor != null)
+				cardImageCount++;
+		}
+
+		executor.shutdown();
+	}
+
+	/**
+	 * Loads an image from the ImageCache, or decodes it and gives it rounded
+	 * corners if needed.
+	 * 
+	 * @param name
+	 *            The name of the image.
+	 * @param imageURL
+	 *            The URL of the image resource.
+	 * @param roundColor
+	 *            The Color of the rounded border, <code>null</code> to keep
+	 *            the image as it is.
+	 * @return The loaded BufferedImage, <code>null</code> if loading failed.
+	 */
+	private BufferedImage loadImage(String name, URL imageURL,
+			Color roundColor) {
+		try {
+			byte[] data = readResource(imageURL);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			checksums.put(name, crc.getValue());
+
+			long key = ImageCache.key(crc.getValue(), 0, 0);
+			BufferedImage image = cache.get(key);
+			if (image != null)
+				return image;
+
+			image = ImageIO.read(new ByteArrayInputStream(data));
+			if (roundColor != null)
+				image = makeRoundedCorner(image, roundColor);
+			else if (!ImageCache.isCacheable(image))
+				image = toIntImage(image);
+
+			cache.put(key, image);
+			return image;
+		} catch (IOException e) {
+			System.err.println("Error while loading image: "
+					+ imageURL.toString());
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static byte[] readResource(URL url) throws IOException {
+		try (InputStream in = url.openStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
 			}
+			return out.toByteArray();
 		}
 	}
 
+	/**
+	 * Converts an image to an integer RGB or ARGB image, which the
+	 * ImageCache can store.
+	 */
+	private static BufferedImage toIntImage(BufferedImage image) {
+		int type = BufferedImage.TYPE_INT_ARGB;
+		if (image.getTransparency() == Transparency.OPAQUE)
+			type = BufferedImage.TYPE_INT_RGB;
+		BufferedImage output = new BufferedImage(image.getWidth(),
+				image.getHeight(), type);
+
+		Graphics2D g2 = output.createGraphics();
+		g2.setComposite(AlphaComposite.Src);
+		g2.drawImage(image, 0, 0, null);
+		g2.dispose();
+
+		return output;
+	}
+
+	/**
+	 * Writes the images added to the ImageCache on a background thread.
+	 */
+	private void flushCache() {
+		cacheWriter.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				cache.flush();
+			}
+		});
+	}
+
+	/**
+	 * Tells the observers that were handed the placeholder that another image
+	 * is ready, on the event dispatch thread.
+	 */
+	private void imageLoaded() {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				List<ImageObserver> observers = new ArrayList<>(
+						waitingObservers);
+				waitingObservers.clear();
+				for (ImageObserver observer : observers) {
+					observer.imageUpdate(placeholder, ImageObserver.ALLBITS,
+							0, 0, cardSize.width, cardSize.height);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Gives a specified BufferedImage rounded corners.
 	 * 
@@ -143,6 +329,129 @@ public class ImageManager {
 	 * @return The retrieved BufferedImage.
 	 */
 	public BufferedImage getImage(String name) {
-		return images.get(name);
+		Future<BufferedImage> image = images.get(name);
+		if (image == null)
+			return null;
+
+		// Waits for the image if it is still being loaded
+		try {
+			return image.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the size of the scaled card and cover images. The scaled images
+	 * are rebuilt once for a new size, each the first time it is requested,
+	 * and stored in the pixel format of the screen, so they can be drawn
+	 * without any conversion.
+	 * 
+	 * @param size
+	 *            The size of a card on the screen.
+	 */
+	public void setCardSize(Dimension size) {
+		if (size.equals(cardSize))
+			return;
+		cardSize = new Dimension(size);
+
+		scaledImages.clear();
+		placeholder = null;
+	}
+
+	/**
+	 * Returns the card or cover image with the specified name, scaled to the
+	 * size last passed to {@link #setCardSize(Dimension)}. An image that is
+	 * still being loaded is replaced by a blank card, and the observer is
+	 * notified as soon as another image is ready.
+	 * 
+	 * @param name
+	 *            The name of the BufferedImage to be retrieved.
+	 * @param observer
+	 *            The ImageObserver to be notified if the placeholder is
+	 *            returned, or <code>null</code>.
+	 * @return The retrieved BufferedImage or the placeholder.
+	 */
+	public BufferedImage getScaledImage(String name, ImageObserver observer) {
+		BufferedImage scaled = scaledImages.get(name);
+		if (scaled != null)
+			return scaled;
+
+		Future<BufferedImage> image = images.get(name);
+		if (image == null)
+			return null;
+
+		if (!image.isDone()) {
+			if (observer != null && !waitingObservers.contains(observer))
+				waitingObservers.add(observer);
+			return getPlaceholder();
+		}
+
+		BufferedImage source = getImage(name);
+		if (source == null)
+			return null;
+
+		long key = ImageCache.key(checksums.get(name), cardSize.width,
+				cardSize.height);
+		scaled = cache.get(key);
+		if (scaled == null) {
+			scaled = scale(source, cardSize);
+			cache.put(key, scaled);
+		}
+		scaledImages.put(name, scaled);
+
+		if (scaledImages.size() == cardImageCount)
+			flushCache();
+		return scaled;
+	}
+
+	private BufferedImage getPlaceholder() {
+		if (placeholder == null) {
+			placeholder = createImage(cardSize);
+
+			Graphics2D g2 = placeholder.createGraphics();
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+			RoundRectangle2D shape = new RoundRectangle2D.Float(0, 0,
+					cardSize.width - 1, cardSize.height - 1, 9, 9);
+			g2.setColor(Color.WHITE);
+			g2.fill(shape);
+			g2.setColor(CARD_ROUND_COLOR);
+			g2.draw(shape);
+			g2.dispose();
+		}
+		return placeholder;
+	}
+
+	private static BufferedImage createImage(Dimension size) {
+		if (GraphicsEnvironment.isHeadless())
+			return new BufferedImage(size.width, size.height,
+					BufferedImage.TYPE_INT_ARGB_PRE);
+		else
+			return GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration()
+					.createCompatibleImage(size.width, size.height,
+							Transparency.TRANSLUCENT);
+	}
+
+	private static BufferedImage scale(BufferedImage image, Dimension size) {
+		BufferedImage output = createImage(size);
+
+		Graphics2D g2 = output.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2.setRenderingHint(RenderingHints.KEY_RENDERING,
+				RenderingHints.VALUE_RENDER_QUALITY);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setComposite(AlphaComposite.Src);
+		g2.drawImage(image, 0, 0, size.width, size.height, null);
+		g2.dispose();
+
+		return output;
 	}
 }
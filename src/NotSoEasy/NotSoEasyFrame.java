@@ -6,8 +6,10 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.math.BigInteger;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
@@ -16,23 +18,46 @@ import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
+import Solver.BeamSearch;
+import Solver.SolverResult;
+import State.GameState;
 import State.StateManager;
 
 public class NotSoEasyFrame extends JFrame implements Observer {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Maximum number of positions searched for a hint.
+	 */
+	private static final long HINT_NODE_LIMIT = 2000000;
+
+	/**
+	 * Maximum duration of the search for a hint in milliseconds.
+	 */
+	private static final long HINT_TIME_LIMIT = 1000;
+
+	/**
+	 * Number of positions kept per layer by the first beam of a hint search.
+	 */
+	private static final int HINT_BEAM_WIDTH = 64;
+
 	private GameTable gameTable;
 	private StateManager stateManager;
+	private HintWorker hintWorker;
 
 	private JMenuItem newGameMenuItem;
+	private JMenuItem selectDealMenuItem;
 	private JMenuItem resetGameMenuItem;
 	private JMenuItem undoMoveMenuItem;
 	private JMenuItem redoMoveMenuItem;
+	private JMenuItem hintMenuItem;
 	private JMenuItem exitGameMenuItem;
 
 	private ButtonGroup cardsizeButtonGroup;
@@ -69,10 +94,20 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
+				gameTable.cancelDrag();
 				stateManager.init();
 			}
 		});
 
+		selectDealMenuItem = new JMenuItem("Select Deal...");
+		selectDealMenuItem.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				selectDeal();
+			}
+		});
+
 		resetGameMenuItem = new JMenuItem("Reset Game");
 		resetGameMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R,
 				ActionEvent.CTRL_MASK));
@@ -80,6 +115,7 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
+				gameTable.cancelDrag();
 				stateManager.reset();
 			}
 		});
@@ -91,6 +127,7 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
+				gameTable.cancelDrag();
 				stateManager.undo();
 			}
 		});
@@ -102,10 +139,22 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
+				gameTable.cancelDrag();
 				stateManager.redo();
 			}
 		});
 
+		hintMenuItem = new JMenuItem("Hint");
+		hintMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_H,
+				ActionEvent.CTRL_MASK));
+		hintMenuItem.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				hint();
+			}
+		});
+
 		exitGameMenuItem = new JMenuItem("Exit");
 		exitGameMenuItem.addActionListener(new ActionListener() {
 
@@ -148,10 +197,12 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 		// Add the 'Game' MenuItems
 		JMenu gameMenu = new JMenu("Game");
 		gameMenu.add(newGameMenuItem);
+		gameMenu.add(selectDealMenuItem);
 		gameMenu.add(resetGameMenuItem);
 		gameMenu.addSeparator();
 		gameMenu.add(undoMoveMenuItem);
 		gameMenu.add(redoMoveMenuItem);
+		gameMenu.add(hintMenuItem);
 		gameMenu.addSeparator();
 		gameMenu.add(exitGameMenuItem);
 
@@ -194,6 +245,42 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 		redoMoveMenuItem.setEnabled(stateManager.canRedo());
 	}
 
+	private void selectDeal() {
+		Object input = JOptionPane.showInputDialog(this, "Deal number:",
+				"Select Deal", JOptionPane.PLAIN_MESSAGE, null, null,
+				stateManager.getDealNumber());
+		if (input == null)
+			return;
+
+		try {
+			BigInteger dealNumber = new BigInteger(input.toString().trim());
+			gameTable.cancelDrag();
+			stateManager.init(dealNumber);
+		} catch (IllegalArgumentException e) {
+			JOptionPane.showMessageDialog(this, "Invalid deal number.",
+					"Select Deal", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * Starts searching a hint for the current GameState in the background.
+	 * The search is cancelled as soon as the current GameState changes.
+	 */
+	private void hint() {
+		cancelHint();
+		gameTable.cancelDrag();
+
+		hintWorker = new HintWorker(stateManager.getCurrentState().clone());
+		hintWorker.execute();
+	}
+
+	private void cancelHint() {
+		if (hintWorker != null) {
+			hintWorker.cancel(true);
+			hintWorker = null;
+		}
+	}
+
 	private void about() {
 		JDialog aboutDialog = new AboutDialog(this);
 		aboutDialog.setVisible(true);
@@ -223,9 +310,63 @@ public class NotSoEasyFrame extends JFrame implements Observer {
 
 	@Override
 	public void update(Observable stateManager, Object arg) {
+		cancelHint();
 		updateMenu();
 	}
 
+	/**
+	 * Searches a copy of a GameState on a background thread within a bounded
+	 * time and highlights the first winning Move, unless the hint has been
+	 * cancelled in the meantime.
+	 */
+	private class HintWorker extends SwingWorker<SolverResult, Void> {
+
+		private GameState state;
+
+		public HintWorker(GameState state) {
+			this.state = state;
+		}
+
+		@Override
+		protected SolverResult doInBackground() {
+			return new BeamSearch(HINT_BEAM_WIDTH, HINT_NODE_LIMIT,
+					HINT_TIME_LIMIT).solve(state);
+		}
+
+		@Override
+		protected void done() {
+			// Results for an earlier GameState are never shown
+			if (hintWorker != this || isCancelled())
+				return;
+			hintWorker = null;
+
+			SolverResult result;
+			try {
+				result = get();
+			} catch (InterruptedException e) {
+				return;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				return;
+			}
+
+			if (result.isSolved()) {
+				if (!result.getMoves().isEmpty())
+					gameTable.setHint(result.getMoves().get(0));
+			} else {
+				String message;
+				if (result.getOutcome() == SolverResult.Outcome.Unsolvable)
+					message = "I'm afraid this game can no longer be won, dear.";
+				else
+					message = "Even I can't see a winning move here, dear.";
+
+				JDialog hintDialog = new BobonneDialog(gameTable, "Hint",
+						message);
+				hintDialog.setVisible(true);
+			}
+		}
+	}
+
 	private class CardSizeActionListener implements ActionListener {
 
 		private int width;
@@ -0,0 +1,102 @@
+package Rules;
+
+import Card.Card;
+
+/**
+ * The rules of a play CardStack compiled into lookup tables indexed by Card
+ * id, so that evaluating them takes a few array lookups instead of walking
+ * the Suit and Rank enumerations.
+ *
+ * The tables are derived once from the Card enumerations: a 52 by 52 bit
+ * matrix telling which Card may be pushed onto which Card, a flag per Card
+ * telling whether it may be pushed onto an empty play stack, and for every
+ * Card the only Card it may be pushed onto and the only Card that may be
+ * pushed onto it.
+ *
+ * @author Pyck Nicolas
+ */
+public final class RuleTables {
+
+	/**
+	 * The number of Card ids.
+	 */
+	public static final int CARDS = Card.Suit.values().length
+			* Card.Rank.values().length;
+
+	/**
+	 * Bit <code>t</code> of row <code>c</code> is set when Card <code>c</code>
+	 * may be pushed onto Card <code>t</code>.
+	 */
+	private static final long[] STACKS_ON = new long[CARDS];
+	private static final boolean[] TO_EMPTY = new boolean[CARDS];
+	private static final byte[] SUCCESSORS = new byte[CARDS];
+	private static final byte[] PREDECESSORS = new byte[CARDS];
+
+	static {
+		for (int c = 0; c < CARDS; c++) {
+			Card card = Card.get(c);
+			TO_EMPTY[c] = card.getRank() == Card.Rank.King;
+			SUCCESSORS[c] = -1;
+			PREDECESSORS[c] = -1;
+		}
+
+		for (int c = 0; c < CARDS; c++) {
+			Card card = Card.get(c);
+			for (int t = 0; t < CARDS; t++) {
+				Card target = Card.get(t);
+				if (card.getSuit() == target.getSuit()
+						&& card.getRank().ordinal() + 1 == target.getRank()
+								.ordinal()) {
+					STACKS_ON[c] |= 1L << t;
+					SUCCESSORS[c] = (byte) t;
+					PREDECESSORS[t] = (byte) c;
+				}
+			}
+		}
+	}
+
+	private RuleTables() {
+	}
+
+	/**
+	 * @param card
+	 *            The id of the Card to be pushed.
+	 * @param target
+	 *            The id of the top Card of the target play stack.
+	 * @return <code>true</code> if the Card may be pushed onto the target
+	 *         Card, <code>false</code> otherwise.
+	 */
+	public static boolean canStackOn(int card, int target) {
+		return (STACKS_ON[card] >>> target & 1) != 0;
+	}
+
+	/**
+	 * @param card
+	 *            The id of the Card to be pushed.
+	 * @return <code>true</code> if the Card may be pushed onto an empty play
+	 *         stack, <code>false</code> otherwise.
+	 */
+	public static boolean canMoveToEmpty(int card) {
+		return TO_EMPTY[card];
+	}
+
+	/**
+	 * @param card
+	 *            The id of a Card.
+	 * @return The id of the only Card the Card may be pushed onto, or
+	 *         <code>-1</code> for a King.
+	 */
+	public static int successor(int card) {
+		return SUCCESSORS[card];
+	}
+
+	/**
+	 * @param card
+	 *            The id of a Card.
+	 * @return The id of the only Card that may be pushed onto the Card, or
+	 *         <code>-1</code> for an Ace.
+	 */
+	public static int predecessor(int card) {
+		return PREDECESSORS[card];
+	}
+}
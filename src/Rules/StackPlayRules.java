@@ -1,12 +1,11 @@
 package Rules;
 
-import java.util.Stack;
-
 import Card.Card;
 import Card.CardStack;
 
 /**
- * Rules implementation for a play CardStack
+ * Rules implementation for a play CardStack, evaluated with the lookup tables
+ * of {@link RuleTables}.
  * 
  * @author Pyck Nicolas
  * 
@@ -15,40 +14,32 @@ public class StackPlayRules implements StackRules {
 
 	@Override
 	public boolean validMove(Card source, CardStack target) {
-		boolean valid = true;
-
-		if (target.getSize() > 0) {
-			Card targetCard = target.getCards().lastElement();
-
-			valid &= source.getSuit() == targetCard.getSuit();
-			valid &= (source.getRank().ordinal() + 1) == targetCard.getRank()
-					.ordinal();
-		} else {
-			valid &= source.getRank() == Card.Rank.King;
-		}
-
-		return valid;
+		return validMove(source.getId(), target);
 	}
 
 	@Override
 	public boolean validMove(CardStack source, CardStack target) {
-		Card sourceCard = source.getCards().firstElement();
+		return validMove(source.idAt(0), target);
+	}
 
-		return validMove(sourceCard, target);
+	private static boolean validMove(int source, CardStack target) {
+		int size = target.getSize();
+		if (size > 0)
+			return RuleTables.canStackOn(source, target.idAt(size - 1));
+		else
+			return RuleTables.canMoveToEmpty(source);
 	}
 
 	@Override
 	public boolean isCompleted(CardStack stack) {
 		if (stack.isEmpty())
 			return true;
-		else if (stack.getSize() < Card.Rank.values().length
+		else if (stack.getSize() != Card.Rank.values().length
 				|| stack.containsCovered())
 			return false;
 		else {
-			Stack<Card> cards = stack.getCards();
-			for (int i = 0; i < cards.size() - 1; i++) {
-				if (cards.get(i).getSuit() != cards.get(i + 1).getSuit()
-						&& cards.get(i).compareTo(cards.get(i + 1)) != -1)
+			for (int i = 0; i < stack.getSize() - 1; i++) {
+				if (!RuleTables.canStackOn(stack.idAt(i + 1), stack.idAt(i)))
 					return false;
 			}
 			return true;
@@ -59,16 +50,18 @@ public class StackPlayRules implements StackRules {
 	@Override
 	public boolean isPlayable(CardStack stack) {
 		if (stack.containsCovered()) {
-			Stack<Card> cards = stack.getCards();
-			for (int i = stack.getSize() - 1; i > 0; i--) {
-				if (cards.get(i - 1).getFacing() == Card.Facing.FaceDown) {
-					for (int j = i - 1; i >= 0; j--) {
-						if (cards.get(i).getSuit() == cards.get(j).getSuit()
-								&& cards.get(i).getRank().ordinal() + 1 == cards
-										.get(j).getSuit().ordinal())
-							return false;
-					}
+			// A face down Card or the lowest face up Card can only ever leave
+			// the stack onto its successor, which is stuck below it if it is
+			// face down in the same stack
+			int last = stack.firstFaceUp();
+			if (last < 0)
+				last = stack.getSize() - 1;
 
+			for (int i = last; i > 0; i--) {
+				int successor = RuleTables.successor(stack.idAt(i));
+				for (int j = i - 1; j >= 0; j--) {
+					if (stack.idAt(j) == successor)
+						return false;
 				}
 			}
 		}
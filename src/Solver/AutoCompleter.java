@@ -0,0 +1,110 @@
+package Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Card.CardStack;
+import Rules.RuleTables;
+import State.GameState;
+import State.Move;
+
+/**
+ * Detects positions that are trivially won and finds their remaining moves.
+ *
+ * Once every Card is face up, moving a Card onto its successor never blocks
+ * any other move, so such moves can be made greedily in any order. The only
+ * choice left is which King gets an empty play stack; as long as there are at
+ * least as many empty play stacks as Kings still to be placed, that choice
+ * does not matter either. A position is trivially won if greedy play under
+ * this restriction completes the game, which takes a few microseconds.
+ *
+ * @author Pyck Nicolas
+ */
+public class AutoCompleter {
+
+	private AutoCompleter() {
+	}
+
+	/**
+	 * Finds the remaining moves of a trivially won GameState. The GameState
+	 * itself is left untouched.
+	 *
+	 * @param state
+	 *            The GameState to be completed.
+	 * @return The Moves completing the GameState, or <code>null</code> if the
+	 *         GameState is not trivially won.
+	 */
+	public static List<Move> complete(GameState state) {
+		for (CardStack stack : state.getPlayStacks()) {
+			if (stack.containsCovered())
+				return null;
+		}
+		for (CardStack stack : state.getSpareStacks()) {
+			if (stack.containsCovered())
+				return null;
+		}
+
+		GameState copy = state.clone();
+		MoveGenerator generator = new MoveGenerator();
+		List<Move> moves = new ArrayList<Move>();
+
+		while (!copy.isCompleted()) {
+			int n = generator.generate(copy);
+
+			int next = -1;
+			int king = -1;
+			for (int i = 0; i < n && next < 0; i++) {
+				int move = generator.get(i);
+				CardStack source = Move.getStack(copy,
+						MoveGenerator.source(move));
+				CardStack target = Move.getStack(copy,
+						MoveGenerator.target(move));
+
+				if (!target.isEmpty())
+					next = move;
+				else if (king < 0
+						&& (MoveGenerator.source(move) >= Board.PLAY_STACKS || MoveGenerator
+								.count(move) < source.getSize()))
+					king = move;
+			}
+
+			if (next < 0) {
+				if (king < 0 || countEmpty(copy) < countUnplacedKings(copy))
+					return null;
+				next = king;
+			}
+
+			Move move = MoveGenerator.toMove(next);
+			move.apply(copy);
+			moves.add(move);
+		}
+
+		return moves;
+	}
+
+	private static int countEmpty(GameState state) {
+		int count = 0;
+		for (CardStack stack : state.getPlayStacks()) {
+			if (stack.isEmpty())
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the Kings that are not yet at the bottom of a play stack.
+	 */
+	private static int countUnplacedKings(GameState state) {
+		int count = 0;
+		CardStack[] playStacks = state.getPlayStacks();
+		for (int i = 0; i < Board.STACKS; i++) {
+			CardStack stack = Move.getStack(state, i);
+			for (int j = 0; j < stack.getSize(); j++) {
+				if (RuleTables.canMoveToEmpty(stack.idAt(j))
+						&& (j > 0 || i >= playStacks.length))
+					count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,284 @@
+package Solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import Rules.RuleTables;
+import State.GameState;
+
+/**
+ * A heuristic search that looks for a good, not necessarily shortest, winning
+ * move sequence within a strict budget of positions and time. It is meant for
+ * interactive hints and batch sweeps, where a bounded latency matters more
+ * than a proof.
+ *
+ * The search expands the positions of a beam layer by layer and only keeps
+ * the best positions of each layer according to an evaluation of their
+ * stacks: face down Cards, play stacks still containing face down Cards,
+ * lowest face up Cards waiting for a face down successor, Cards left on the
+ * spare stacks, Cards already in place above a King and empty play stacks.
+ * Whenever a beam dies out without a win, the search starts over with a beam
+ * twice as wide, until the budget is spent.
+ *
+ * A search that never had to drop a position has searched every position and
+ * therefore proves the GameState unwinnable. Otherwise it gives up with an
+ * Aborted SolverResult, as does a search whose thread is interrupted.
+ *
+ * A BeamSearch reuses its buffers between searches and must therefore not be
+ * shared between threads.
+ *
+ * @author Pyck Nicolas
+ */
+public class BeamSearch {
+
+	/**
+	 * Mask of the node count at which the search checks its time limit and
+	 * interruption.
+	 */
+	private static final long BUDGET_CHECK = (1 << 10) - 1;
+
+	private static final int COVERED_WEIGHT = 10;
+	private static final int COVERED_STACK_WEIGHT = 5;
+	private static final int BLOCKED_WEIGHT = 4;
+	private static final int SPARE_WEIGHT = 2;
+	private static final int IN_PLACE_WEIGHT = 3;
+	private static final int EMPTY_WEIGHT = 4;
+
+	private final int width;
+	private final long nodeLimit;
+	private final long timeLimit;
+	private final LongHashSet visited = new LongHashSet();
+
+	private long nodes;
+	private long deadline;
+	private boolean dropped;
+	private boolean aborted;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param width
+	 *            The number of positions kept per layer by the first beam.
+	 * @param nodeLimit
+	 *            The maximum number of positions to be evaluated.
+	 * @param timeLimit
+	 *            The maximum duration of a search in milliseconds.
+	 */
+	public BeamSearch(int width, long nodeLimit, long timeLimit) {
+		if (width < 1)
+			throw new IllegalArgumentException("Invalid beam width: " + width);
+		this.width = width;
+		this.nodeLimit = nodeLimit;
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Searches a winning move sequence for the specified GameState. The
+	 * GameState itself is left untouched.
+	 *
+	 * @param state
+	 *            The GameState to be solved.
+	 * @return The SolverResult of the search.
+	 */
+	public SolverResult solve(GameState state) {
+		long start = System.nanoTime();
+		deadline = start + Math.min(timeLimit, Long.MAX_VALUE / 2000000)
+				* 1000000;
+		nodes = 1;
+
+		Board board = new Board(state);
+		if (board.isWon())
+			return Solver.result(SolverResult.Outcome.Solved, new int[0], 0,
+					nodes, start);
+		if (board.isDead())
+			return Solver.result(SolverResult.Outcome.Unsolvable, new int[0],
+					0, nodes, start);
+
+		for (int w = width; true; w = (int) Math.min(Integer.MAX_VALUE / 2,
+				2L * w)) {
+			Node won = search(board, w);
+			if (aborted)
+				return Solver.result(SolverResult.Outcome.Aborted, new int[0],
+						0, nodes, start);
+
+			if (won != null) {
+				int length = 0;
+				for (Node node = won; node.parent != null; node = node.parent) {
+					length++;
+				}
+
+				int[] path = new int[length];
+				for (Node node = won; node.parent != null; node = node.parent) {
+					path[--length] = node.move;
+				}
+				return Solver.result(SolverResult.Outcome.Solved, path,
+						path.length, nodes, start);
+			}
+
+			if (!dropped)
+				return Solver.result(SolverResult.Outcome.Unsolvable,
+						new int[0], 0, nodes, start);
+		}
+	}
+
+	/**
+	 * Runs a single beam from the root position.
+	 *
+	 * @return The winning Node, or <code>null</code> if the beam died out or
+	 *         the search was aborted.
+	 */
+	private Node search(Board root, int w) {
+		visited.clear();
+		visited.add(root.hash);
+		dropped = false;
+		aborted = false;
+
+		List<Node> beam = new ArrayList<Node>();
+		beam.add(new Node(null, 0, new Board(root)));
+
+		int[] moves = new int[Board.MAX_MOVES];
+		// Grown on demand, wide beams rarely fill up
+		int[] parents = new int[Math.min(w, 1024) * Board.MAX_MOVES];
+		int[] children = new int[parents.length];
+		long[] ranking = new long[parents.length];
+
+		while (!beam.isEmpty()) {
+			int n = 0;
+			for (int i = 0; i < beam.size(); i++) {
+				Board board = beam.get(i).board;
+				int count = board.generate(moves, 0);
+
+				for (int j = 0; j < count; j++) {
+					int move = moves[j];
+					board.apply(move);
+					if (!countNode()) {
+						aborted = true;
+						return null;
+					}
+
+					if (board.isWon())
+						return new Node(beam.get(i), move, null);
+
+					if (visited.add(board.hash)
+							&& !(Board.isFlip(move) && board
+									.isDeadlocked(Board.source(move)))) {
+						if (n == parents.length) {
+							parents = Arrays.copyOf(parents, 2 * n);
+							children = Arrays.copyOf(children, 2 * n);
+							ranking = Arrays.copyOf(ranking, 2 * n);
+						}
+						parents[n] = i;
+						children[n] = move;
+						// Best scores sort last, ties keep generation order
+						ranking[n] = (long) evaluate(board) << 32
+								| (Integer.MAX_VALUE - n);
+						n++;
+					}
+					board.undo(move);
+				}
+			}
+
+			Arrays.sort(ranking, 0, n);
+			if (n > w)
+				dropped = true;
+
+			List<Node> next = new ArrayList<Node>(Math.min(n, w));
+			for (int k = n - 1; k >= Math.max(0, n - w); k--) {
+				int c = Integer.MAX_VALUE - (int) ranking[k];
+				Node parent = beam.get(parents[c]);
+				Board board = new Board(parent.board);
+				board.apply(children[c]);
+				next.add(new Node(parent, children[c], board));
+			}
+
+			// Only the moves of earlier layers are still needed
+			for (Node node : beam) {
+				node.board = null;
+			}
+			beam = next;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Counts a searched position against the budget.
+	 *
+	 * @return <code>true</code> if the search may go on, <code>false</code>
+	 *         if it ran out of positions or time or was interrupted.
+	 */
+	private boolean countNode() {
+		nodes++;
+		return nodes < nodeLimit
+				&& ((nodes & BUDGET_CHECK) != 0 || System.nanoTime()
+						- deadline < 0
+						&& !Thread.currentThread().isInterrupted());
+	}
+
+	/**
+	 * Evaluates a position, higher scores being closer to a win.
+	 *
+	 * @param board
+	 *            The Board to be evaluated.
+	 * @return The score of the position.
+	 */
+	static int evaluate(Board board) {
+		int score = 0;
+
+		for (int s = 0; s < Board.PLAY_STACKS; s++) {
+			int size = board.sizes[s];
+			int covered = board.covered[s];
+			byte[] cards = board.cards[s];
+
+			if (size == 0) {
+				score += EMPTY_WEIGHT;
+				continue;
+			}
+
+			if (covered > 0) {
+				score -= COVERED_WEIGHT * covered + COVERED_STACK_WEIGHT;
+
+				// The lowest face up Card waits for a face down successor
+				int successor = covered < size ? RuleTables
+						.successor(cards[covered]) : -1;
+				if (successor >= 0) {
+					int next = board.stackOf[successor];
+					if (next < Board.PLAY_STACKS
+							&& board.indexOf[successor] < board.covered[next])
+						score -= BLOCKED_WEIGHT;
+				}
+			} else if (RuleTables.canMoveToEmpty(cards[0])) {
+				int inPlace = 1;
+				while (inPlace < size
+						&& RuleTables.canStackOn(cards[inPlace],
+								cards[inPlace - 1])) {
+					inPlace++;
+				}
+				score += IN_PLACE_WEIGHT * inPlace;
+			}
+		}
+
+		for (int s = Board.PLAY_STACKS; s < Board.STACKS; s++) {
+			score -= SPARE_WEIGHT * board.sizes[s];
+		}
+
+		return score;
+	}
+
+	/**
+	 * A position of a beam, linked to the position it was reached from.
+	 */
+	private static class Node {
+
+		final Node parent;
+		final int move;
+		Board board;
+
+		Node(Node parent, int move, Board board) {
+			this.parent = parent;
+			this.move = move;
+			this.board = board;
+		}
+	}
+}
@@ -0,0 +1,422 @@
+package Solver;
+
+import java.util.Random;
+
+import Card.Card;
+import Card.CardStack;
+import Rules.RuleTables;
+import State.GameState;
+import State.Move;
+
+/**
+ * A compact, mutable board used by the search algorithms. Cards are stored as
+ * ids (<code>suit * 13 + rank</code>) in primitive arrays and every move is
+ * applied and reverted in place, so a search never copies a GameState.
+ *
+ * Stacks are addressed by a single index: <code>0</code> to <code>7</code>
+ * are the play stacks, <code>8</code> to <code>11</code> the spare stacks.
+ * Face down Cards always form the bottom of a stack, so the facing of a stack
+ * is stored as the number of covered Cards.
+ *
+ * The hash of the Board is the sum of the mixed hashes of its stacks, which
+ * do not depend on the index of the stack. Positions that only differ in the
+ * order of their play stacks or of their spare stacks therefore share a hash,
+ * as all play stacks and all spare stacks follow the same rules.
+ *
+ * @author Pyck Nicolas
+ */
+class Board {
+
+	static final int PLAY_STACKS = 8;
+	static final int SPARE_STACKS = 4;
+	static final int STACKS = PLAY_STACKS + SPARE_STACKS;
+
+	static final int RANKS = Card.Rank.values().length;
+	static final int CARDS = Card.Suit.values().length * RANKS;
+
+	/**
+	 * Upper bound for the number of moves generated for a single position.
+	 */
+	static final int MAX_MOVES = 16;
+
+	private static final long[] POSITION_KEYS;
+	private static final long[] FACING_KEYS;
+
+	static {
+		Random random = new Random(0x5DEECE66DL);
+
+		POSITION_KEYS = new long[2 * CARDS * CARDS];
+		for (int i = 0; i < POSITION_KEYS.length; i++) {
+			POSITION_KEYS[i] = random.nextLong();
+		}
+
+		FACING_KEYS = new long[CARDS];
+		for (int i = 0; i < FACING_KEYS.length; i++) {
+			FACING_KEYS[i] = random.nextLong();
+		}
+	}
+
+	final byte[][] cards;
+	final int[] sizes;
+	final int[] covered;
+
+	final byte[] stackOf;
+	final byte[] indexOf;
+
+	final long[] stackHashes;
+	long hash;
+
+	/**
+	 * Constructor for a Board identical to the specified GameState.
+	 *
+	 * @param state
+	 *            The GameState to be converted.
+	 */
+	Board(GameState state) {
+		cards = new byte[STACKS][CARDS];
+		sizes = new int[STACKS];
+		covered = new int[STACKS];
+		stackOf = new byte[CARDS];
+		indexOf = new byte[CARDS];
+		stackHashes = new long[STACKS];
+
+		for (int i = 0; i < CARDS; i++) {
+			stackOf[i] = -1;
+		}
+
+		CardStack[] playStacks = state.getPlayStacks();
+		for (int i = 0; i < PLAY_STACKS; i++) {
+			load(i, playStacks[i]);
+		}
+
+		CardStack[] spareStacks = state.getSpareStacks();
+		for (int i = 0; i < SPARE_STACKS; i++) {
+			load(PLAY_STACKS + i, spareStacks[i]);
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param board
+	 *            The Board to be copied.
+	 */
+	Board(Board board) {
+		cards = new byte[STACKS][];
+		for (int i = 0; i < STACKS; i++) {
+			cards[i] = board.cards[i].clone();
+		}
+		sizes = board.sizes.clone();
+		covered = board.covered.clone();
+		stackOf = board.stackOf.clone();
+		indexOf = board.indexOf.clone();
+		stackHashes = board.stackHashes.clone();
+		hash = board.hash;
+	}
+
+	private void load(int stack, CardStack cs) {
+		long stackHash = 0;
+		for (int i = 0; i < cs.getSize(); i++) {
+			int id = cs.idAt(i);
+
+			if (cs.isFacingDown(i)) {
+				if (covered[stack] != i)
+					throw new IllegalArgumentException(
+							"Face down Card on top of a face up Card: " + cs);
+				covered[stack]++;
+				stackHash ^= FACING_KEYS[id];
+			}
+
+			cards[stack][i] = (byte) id;
+			stackOf[id] = (byte) stack;
+			indexOf[id] = (byte) i;
+			stackHash ^= key(stack, i, id);
+		}
+		sizes[stack] = cs.getSize();
+
+		stackHashes[stack] = stackHash;
+		hash += mix(stackHash);
+	}
+
+	private static long key(int stack, int index, int card) {
+		int kind = stack < PLAY_STACKS ? 0 : 1;
+		return POSITION_KEYS[(kind * CARDS + index) * CARDS + card];
+	}
+
+	/**
+	 * Replaces the hash of a stack by its hash combined with a key.
+	 */
+	private void rehash(int stack, long key) {
+		hash -= mix(stackHashes[stack]);
+		stackHashes[stack] ^= key;
+		hash += mix(stackHashes[stack]);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 31;
+		hash *= 0x7FB5D329728EA185L;
+		hash ^= hash >>> 27;
+		hash *= 0x81DADEF4BC2DD44DL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Encodes a move as specified by {@link MoveGenerator#encode(int, int, int)}.
+	 */
+	static int move(int source, int target, int count) {
+		return MoveGenerator.encode(source, target, count);
+	}
+
+	static int flip(int stack) {
+		return MoveGenerator.encodeFlip(stack);
+	}
+
+	static int source(int move) {
+		return MoveGenerator.source(move);
+	}
+
+	static int target(int move) {
+		return MoveGenerator.target(move);
+	}
+
+	static int count(int move) {
+		return MoveGenerator.count(move);
+	}
+
+	static boolean isFlip(int move) {
+		return MoveGenerator.isFlip(move);
+	}
+
+	static Move toMove(int move) {
+		return MoveGenerator.toMove(move);
+	}
+
+	/**
+	 * Applies a move generated for the current position.
+	 *
+	 * @param move
+	 *            The encoded move.
+	 */
+	void apply(int move) {
+		int source = source(move);
+		if (isFlip(move)) {
+			covered[source]--;
+			rehash(source, FACING_KEYS[cards[source][covered[source]]]);
+		} else {
+			transfer(source, target(move), count(move));
+		}
+	}
+
+	/**
+	 * Reverts a move previously applied with {@link #apply(int)}.
+	 *
+	 * @param move
+	 *            The encoded move.
+	 */
+	void undo(int move) {
+		int source = source(move);
+		if (isFlip(move)) {
+			rehash(source, FACING_KEYS[cards[source][covered[source]]]);
+			covered[source]++;
+		} else {
+			transfer(target(move), source, count(move));
+		}
+	}
+
+	private void transfer(int source, int target, int count) {
+		byte[] from = cards[source];
+		byte[] to = cards[target];
+		int start = sizes[source] - count;
+		int end = sizes[target];
+
+		long sourceKeys = 0;
+		long targetKeys = 0;
+		for (int i = 0; i < count; i++) {
+			byte card = from[start + i];
+			sourceKeys ^= key(source, start + i, card);
+			targetKeys ^= key(target, end + i, card);
+			to[end + i] = card;
+			stackOf[card] = (byte) target;
+			indexOf[card] = (byte) (end + i);
+		}
+		rehash(source, sourceKeys);
+		rehash(target, targetKeys);
+
+		sizes[source] = start;
+		sizes[target] = end + count;
+	}
+
+	/**
+	 * Generates all useful legal moves of the current position. Exposing a
+	 * covered Card never hurts, so a pending flip is returned as the only
+	 * move. Moves that uncover a Card are ordered first.
+	 *
+	 * @param buffer
+	 *            The buffer receiving the encoded moves.
+	 * @param offset
+	 *            The position of the first move in the buffer.
+	 * @return The number of moves generated.
+	 */
+	int generate(int[] buffer, int offset) {
+		int firstEmpty = -1;
+		for (int i = 0; i < PLAY_STACKS; i++) {
+			if (sizes[i] == 0) {
+				if (firstEmpty < 0)
+					firstEmpty = i;
+			} else if (covered[i] == sizes[i]) {
+				buffer[offset] = flip(i);
+				return 1;
+			}
+		}
+
+		int n = 0;
+
+		// Cards onto the successor of the same suit
+		for (int target = 0; target < PLAY_STACKS; target++) {
+			if (sizes[target] == 0)
+				continue;
+
+			int card = RuleTables.predecessor(cards[target][sizes[target] - 1]);
+			if (card < 0)
+				continue;
+
+			n = add(buffer, offset, n, card, target);
+		}
+
+		// Kings onto an empty play stack
+		if (firstEmpty >= 0) {
+			for (int king = RANKS - 1; king < CARDS; king += RANKS) {
+				if (stackOf[king] < PLAY_STACKS && indexOf[king] == 0)
+					continue;
+
+				n = add(buffer, offset, n, king, firstEmpty);
+			}
+		}
+
+		return n;
+	}
+
+	private int add(int[] buffer, int offset, int n, int card, int target) {
+		int source = stackOf[card];
+		if (source < 0 || source == target)
+			return n;
+
+		int index = indexOf[card];
+		if (index < covered[source])
+			return n;
+
+		int move = move(source, target, sizes[source] - index);
+
+		// Moves that expose a covered Card are tried first
+		if (index > 0 && index == covered[source]) {
+			buffer[offset + n] = buffer[offset];
+			buffer[offset] = move;
+		} else {
+			buffer[offset + n] = move;
+		}
+		return n + 1;
+	}
+
+	/**
+	 * Determines whether a move generated for the current position exposes a
+	 * covered Card.
+	 *
+	 * @param move
+	 *            The encoded move.
+	 * @return <code>true</code> if the move leaves a face down Card on top of
+	 *         its source stack, <code>false</code> otherwise.
+	 */
+	boolean exposesCard(int move) {
+		int source = source(move);
+		int index = sizes[source] - count(move);
+		return !isFlip(move) && index > 0 && index == covered[source];
+	}
+
+	/**
+	 * Determines whether the lowest face up Card of a play stack can never
+	 * move again: it waits for a successor lying face down in another play
+	 * stack, whose lowest face up Card in turn waits for a successor lying
+	 * face down in a third stack, until the chain leads back to the first
+	 * stack. As face down Cards never move, such a cycle only ever appears
+	 * when a flip exposes a new lowest face up Card.
+	 *
+	 * @param stack
+	 *            The index of the play stack.
+	 * @return <code>true</code> if the position is lost, <code>false</code> if
+	 *         no cycle runs through the stack.
+	 */
+	boolean isDeadlocked(int stack) {
+		int s = stack;
+		for (int steps = 0; steps < PLAY_STACKS; steps++) {
+			if (covered[s] == 0 || covered[s] == sizes[s])
+				return false;
+
+			int successor = RuleTables.successor(cards[s][covered[s]]);
+			if (successor < 0)
+				return false;
+
+			int next = stackOf[successor];
+			if (next >= PLAY_STACKS || indexOf[successor] >= covered[next])
+				return false;
+
+			s = next;
+			if (s == stack)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether the position is lost because a lowest face up Card
+	 * is deadlocked or a face down Card lies above its own successor.
+	 *
+	 * @return <code>true</code> if the position is lost, <code>false</code> if
+	 *         no dead end was detected.
+	 */
+	boolean isDead() {
+		for (int s = 0; s < PLAY_STACKS; s++) {
+			if (isDeadlocked(s))
+				return true;
+
+			for (int i = 1; i < covered[s]; i++) {
+				int successor = RuleTables.successor(cards[s][i]);
+				if (successor >= 0 && stackOf[successor] == s
+						&& indexOf[successor] < i)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether the Board is won, i.e. all spare stacks are empty
+	 * and every play stack is either empty or holds a full King-to-Ace suit.
+	 *
+	 * @return <code>true</code> if the Board is won, <code>false</code>
+	 *         otherwise.
+	 */
+	boolean isWon() {
+		for (int i = PLAY_STACKS; i < STACKS; i++) {
+			if (sizes[i] != 0)
+				return false;
+		}
+
+		for (int i = 0; i < PLAY_STACKS; i++) {
+			if (sizes[i] == 0)
+				continue;
+			if (sizes[i] != RANKS || covered[i] != 0)
+				return false;
+
+			byte[] stack = cards[i];
+			if (!RuleTables.canMoveToEmpty(stack[0]))
+				return false;
+			for (int j = 1; j < RANKS; j++) {
+				if (!RuleTables.canStackOn(stack[j], stack[j - 1]))
+					return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,197 @@
+package Solver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Card.CardDeck;
+import State.GameState;
+
+/**
+ * A command line batch job that solves a range of seeded deals on all cores
+ * and estimates the percentage of solvable deals.
+ *
+ * Deal <code>i</code> is dealt from a CardDeck shuffled with seed
+ * <code>firstSeed + i</code>. Results are streamed to the output file as
+ * fixed size big-endian records of 21 bytes: the seed (8 bytes), the outcome
+ * ordinal (1 byte), the number of positions searched (8 bytes) and the search
+ * time in microseconds (4 bytes).
+ *
+ * Only the Card, Rules, State and Solver packages are used, so neither Swing
+ * nor the ImageManager is ever loaded.
+ *
+ * @author Pyck Nicolas
+ */
+public class Census {
+
+	private static final String USAGE = "Usage: Census <deals> [output] "
+			+ "[threads] [nodeLimit] [firstSeed]";
+
+	private final long deals;
+	private final long firstSeed;
+	private final long nodeLimit;
+	private final DataOutputStream output;
+
+	private final AtomicLong next = new AtomicLong();
+	private final AtomicLong[] outcomes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param deals
+	 *            The number of deals to be solved.
+	 * @param firstSeed
+	 *            The seed of the first deal.
+	 * @param nodeLimit
+	 *            The maximum number of positions searched per deal.
+	 * @param output
+	 *            The stream receiving the result records.
+	 */
+	public Census(long deals, long firstSeed, long nodeLimit,
+			DataOutputStream output) {
+		this.deals = deals;
+		this.firstSeed = firstSeed;
+		this.nodeLimit = nodeLimit;
+		this.output = output;
+
+		outcomes = new AtomicLong[SolverResult.Outcome.values().length];
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Solves all deals using the specified number of threads.
+	 *
+	 * @param threads
+	 *            The number of worker threads.
+	 * @throws IOException
+	 *             If writing a result record failed.
+	 */
+	public void run(int threads) throws IOException {
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < threads; i++) {
+			Worker worker = new Worker();
+			worker.start();
+			workers.add(worker);
+		}
+
+		for (Worker worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (worker.error != null)
+				throw worker.error;
+		}
+	}
+
+	/**
+	 * @param outcome
+	 *            The Outcome to be counted.
+	 * @return The number of deals with the specified Outcome.
+	 */
+	public long getCount(SolverResult.Outcome outcome) {
+		return outcomes[outcome.ordinal()].get();
+	}
+
+	private void write(long seed, SolverResult result) throws IOException {
+		synchronized (output) {
+			output.writeLong(seed);
+			output.writeByte(result.getOutcome().ordinal());
+			output.writeLong(result.getNodes());
+			output.writeInt((int) Math.min(Integer.MAX_VALUE,
+					result.getTime() / 1000));
+		}
+	}
+
+	/**
+	 * A worker thread that keeps claiming and solving the next deal.
+	 */
+	private class Worker extends Thread {
+
+		private IOException error;
+
+		@Override
+		public void run() {
+			Solver solver = new Solver(nodeLimit);
+
+			long i;
+			while ((i = next.getAndIncrement()) < deals) {
+				long seed = firstSeed + i;
+
+				CardDeck deck = new CardDeck();
+				deck.shuffle(seed);
+				SolverResult result = solver.solve(new GameState(deck));
+				outcomes[result.getOutcome().ordinal()].incrementAndGet();
+
+				try {
+					write(seed, result);
+				} catch (IOException e) {
+					error = e;
+					next.set(deals);
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		long deals;
+		String file;
+		int threads;
+		long nodeLimit;
+		long firstSeed;
+		try {
+			deals = Long.parseLong(args[0]);
+			file = args.length > 1 ? args[1] : "census.bin";
+			threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+					.getRuntime().availableProcessors();
+			nodeLimit = args.length > 3 ? Long.parseLong(args[3]) : 10000000;
+			firstSeed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		long start = System.nanoTime();
+
+		DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		Census census = new Census(deals, firstSeed, nodeLimit, output);
+		try {
+			census.run(threads);
+		} finally {
+			output.close();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long solved = census.getCount(SolverResult.Outcome.Solved);
+		long unsolvable = census.getCount(SolverResult.Outcome.Unsolvable);
+		long aborted = census.getCount(SolverResult.Outcome.Aborted);
+
+		System.out.println("Deals:      " + deals + " in "
+				+ String.format("%.1f", seconds) + " s ("
+				+ String.format("%.0f", deals / seconds) + " deals/s)");
+		System.out.println("Solved:     " + solved);
+		System.out.println("Unsolvable: " + unsolvable);
+		System.out.println("Aborted:    " + aborted);
+
+		// Wilson score interval at 95% confidence over the decided deals
+		if (solved + unsolvable > 0) {
+			System.out.println("Solvable:   "
+					+ new WinRateEstimate(solved, solved + unsolvable, 0));
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package Solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed capacity open addressing hash set of primitive
+ * <code>long</code> values that can be shared by several search threads.
+ *
+ * @author Pyck Nicolas
+ */
+class ConcurrentLongHashSet {
+
+	private static final int MAX_PROBES = 1 << 10;
+
+	private final AtomicLongArray keys;
+	private final int mask;
+
+	/**
+	 * Constructor with a specified capacity.
+	 *
+	 * @param capacity
+	 *            The capacity, rounded up to a power of two.
+	 */
+	ConcurrentLongHashSet(int capacity) {
+		int length = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+		keys = new AtomicLongArray(length);
+		mask = length - 1;
+	}
+
+	/**
+	 * Adds a value to the set. The value <code>0</code> is reserved for empty
+	 * slots and is stored as <code>1</code>.
+	 *
+	 * @param key
+	 *            The value to be added.
+	 * @return <code>true</code> if the value was not yet contained in the set,
+	 *         <code>false</code> otherwise.
+	 * @throws IllegalStateException
+	 *             If the set is too full to hold the value.
+	 */
+	boolean add(long key) {
+		if (key == 0)
+			key = 1;
+
+		int i = LongHashSet.mix(key) & mask;
+		for (int probes = 0; probes < MAX_PROBES; probes++) {
+			long current = keys.get(i);
+			if (current == key)
+				return false;
+			if (current == 0) {
+				if (keys.compareAndSet(i, 0, key))
+					return true;
+				if (keys.get(i) == key)
+					return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		throw new IllegalStateException("Visited position table is full");
+	}
+}
@@ -0,0 +1,568 @@
+package Solver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import Card.CardDeck;
+import State.GameState;
+import State.Move;
+import State.PackedState;
+
+/**
+ * An external memory breadth-first explorer that enumerates every position
+ * reachable from a GameState by legal moves, as generated by the
+ * MoveGenerator. Completed positions end the game and are not expanded.
+ *
+ * Positions are stored as PackedState records of <code>PackedState.WORDS</code>
+ * words in sorted files, so the state space is only bounded by the disk. Each
+ * breadth-first layer is expanded into sorted runs of at most
+ * <code>runRecords</code> successors, which are merged with duplicate
+ * detection against the sorted file of all visited positions into the next
+ * layer. Sorted files are read through memory-mapped windows and written
+ * sequentially.
+ *
+ * A canonical Explorer stores every position in the normal form returned by
+ * {@link GameState#canonicalize()}, merging positions that only differ in
+ * the labels of the suits or the order of the stacks. As equivalent positions
+ * share exactly one normal form, all counts are then exact counts of these
+ * classes of equivalent positions, while the shortest win length is
+ * unaffected.
+ *
+ * All temporary files are deleted when an exploration ends, including one
+ * that failed; a file that cannot be deleted is reported on the standard
+ * error stream.
+ *
+ * @author Pyck Nicolas
+ */
+public class Explorer {
+
+	private static final String USAGE = "Usage: Explorer <seed> [directory] "
+			+ "[runRecords] [canonical]";
+
+	private static final int WORDS = PackedState.WORDS;
+	private static final int RECORD_SIZE = WORDS * 8;
+
+	/**
+	 * Number of records of a memory-mapped window.
+	 */
+	private static final int WINDOW_RECORDS = 1 << 20;
+
+	/**
+	 * Number of records of a write buffer.
+	 */
+	private static final int WRITE_RECORDS = 1 << 12;
+
+	private final File directory;
+	private final long[] run;
+	private final boolean canonical;
+	private final long[] pivot = new long[WORDS];
+	private final MoveGenerator generator = new MoveGenerator();
+
+	private int fileCounter;
+	private final List<File> files = new ArrayList<File>();
+
+	private List<Long> layers;
+	private long reachable;
+	private long deadEnds;
+	private long wins;
+	private int shortestWin;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory
+	 *            The directory receiving the temporary files.
+	 * @param runRecords
+	 *            The number of successor positions sorted in memory at once.
+	 */
+	public Explorer(File directory, int runRecords) {
+		this(directory, runRecords, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param directory
+	 *            The directory receiving the temporary files.
+	 * @param runRecords
+	 *            The number of successor positions sorted in memory at once.
+	 * @param canonical
+	 *            <code>true</code> if equivalent positions should be merged,
+	 *            <code>false</code> otherwise.
+	 */
+	public Explorer(File directory, int runRecords, boolean canonical) {
+		this.directory = directory;
+		this.run = new long[runRecords * WORDS];
+		this.canonical = canonical;
+	}
+
+	/**
+	 * Explores all positions reachable from the specified GameState. The
+	 * GameState itself is left untouched.
+	 *
+	 * @param state
+	 *            The initial GameState.
+	 * @throws IOException
+	 *             If reading or writing a temporary file failed.
+	 */
+	public void explore(GameState state) throws IOException {
+		layers = new ArrayList<Long>();
+		reachable = 0;
+		deadEnds = 0;
+		wins = 0;
+		shortestWin = -1;
+
+		long[] root = new long[WORDS];
+		pack(state, root);
+
+		try {
+			File layer = newFile();
+			try (RecordWriter writer = new RecordWriter(layer)) {
+				writer.write(root, 0);
+			}
+
+			File visited = newFile();
+			try (RecordWriter writer = new RecordWriter(visited)) {
+				writer.write(root, 0);
+			}
+
+			long size = 1;
+			while (size > 0) {
+				layers.add(size);
+				reachable += size;
+
+				List<File> runs = expand(layer, layers.size() - 1);
+				delete(layer);
+
+				layer = newFile();
+				size = merge(runs, visited, layer);
+				for (File file : runs) {
+					delete(file);
+				}
+
+				if (size > 0) {
+					File union = newFile();
+					union(visited, layer, union);
+					delete(visited);
+					visited = union;
+				}
+			}
+		} finally {
+			// Every file still left, all of them if the exploration failed
+			for (File file : new ArrayList<File>(files)) {
+				delete(file);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of positions per breadth-first layer, starting with
+	 *         the initial position.
+	 */
+	public List<Long> getLayers() {
+		return Collections.unmodifiableList(layers);
+	}
+
+	/**
+	 * @return The number of reachable positions, including the initial
+	 *         position.
+	 */
+	public long getReachable() {
+		return reachable;
+	}
+
+	/**
+	 * @return The number of reachable positions that are not completed and
+	 *         have no legal move.
+	 */
+	public long getDeadEnds() {
+		return deadEnds;
+	}
+
+	/**
+	 * @return The number of reachable completed positions.
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * @return The length of the shortest winning move sequence, counting flips
+	 *         as moves, or <code>-1</code> if the game cannot be won.
+	 */
+	public int getShortestWin() {
+		return shortestWin;
+	}
+
+	/**
+	 * Expands all positions of a layer into sorted runs of unique successors.
+	 */
+	private List<File> expand(File layer, int depth) throws IOException {
+		List<File> runs = new ArrayList<File>();
+		long[] words = new long[WORDS];
+		int count = 0;
+
+		try (RecordReader reader = new RecordReader(layer)) {
+			while (reader.next()) {
+				GameState state = PackedState.fromWords(reader.record, 0)
+						.unpack();
+				if (state.isCompleted()) {
+					wins++;
+					if (shortestWin < 0)
+						shortestWin = depth;
+					continue;
+				}
+
+				int n = generator.generate(state);
+				if (n == 0)
+					deadEnds++;
+
+				for (int i = 0; i < n; i++) {
+					Move move = MoveGenerator.toMove(generator.get(i));
+					move.apply(state);
+					pack(state, words);
+					move.revert(state);
+
+					System.arraycopy(words, 0, run, count * WORDS, WORDS);
+					if (++count * WORDS == run.length) {
+						runs.add(writeRun(count));
+						count = 0;
+					}
+				}
+			}
+		}
+
+		if (count > 0)
+			runs.add(writeRun(count));
+		return runs;
+	}
+
+	private void pack(GameState state, long[] words) {
+		if (canonical)
+			state = state.canonicalize();
+		new PackedState(state).getWords(words, 0);
+	}
+
+	private File writeRun(int count) throws IOException {
+		sort(run, 0, count);
+
+		File file = newFile();
+		try (RecordWriter writer = new RecordWriter(file)) {
+			for (int i = 0; i < count; i++) {
+				if (i == 0
+						|| compare(run, (i - 1) * WORDS, run, i * WORDS) != 0)
+					writer.write(run, i * WORDS);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Merges sorted runs into a layer of unique positions that are not yet
+	 * visited.
+	 *
+	 * @return The number of positions of the layer.
+	 */
+	private long merge(List<File> runs, File visited, File layer)
+			throws IOException {
+		PriorityQueue<RecordReader> queue = new PriorityQueue<RecordReader>(
+				Math.max(runs.size(), 1));
+		List<RecordReader> readers = new ArrayList<RecordReader>();
+		try {
+			for (File file : runs) {
+				RecordReader reader = new RecordReader(file);
+				readers.add(reader);
+				if (reader.next())
+					queue.add(reader);
+				else
+					reader.close();
+			}
+
+			try (RecordReader seen = new RecordReader(visited);
+					RecordWriter writer = new RecordWriter(layer)) {
+				boolean hasSeen = seen.next();
+				long[] last = new long[WORDS];
+				boolean hasLast = false;
+
+				while (!queue.isEmpty()) {
+					RecordReader reader = queue.poll();
+					long[] record = reader.record;
+
+					if (!hasLast || compare(last, 0, record, 0) != 0) {
+						System.arraycopy(record, 0, last, 0, WORDS);
+						hasLast = true;
+
+						while (hasSeen && compare(seen.record, 0, record, 0) < 0)
+							hasSeen = seen.next();
+						if (!hasSeen || compare(seen.record, 0, record, 0) != 0)
+							writer.write(record, 0);
+					}
+
+					if (reader.next())
+						queue.add(reader);
+					else
+						reader.close();
+				}
+				return writer.count;
+			}
+		} finally {
+			// Readers left open by a failure, closing again is harmless
+			for (RecordReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Merges two sorted files of distinct positions.
+	 */
+	private void union(File first, File second, File result)
+			throws IOException {
+		try (RecordReader a = new RecordReader(first);
+				RecordReader b = new RecordReader(second);
+				RecordWriter writer = new RecordWriter(result)) {
+			boolean hasA = a.next();
+			boolean hasB = b.next();
+			while (hasA || hasB) {
+				if (!hasB || hasA && compare(a.record, 0, b.record, 0) < 0) {
+					writer.write(a.record, 0);
+					hasA = a.next();
+				} else {
+					writer.write(b.record, 0);
+					hasB = b.next();
+				}
+			}
+		}
+	}
+
+	private File newFile() {
+		File file = new File(directory, "explorer-" + (fileCounter++) + ".bin");
+		files.add(file);
+		return file;
+	}
+
+	/**
+	 * Deletes a temporary file, reporting a failure on the standard error
+	 * stream.
+	 */
+	private void delete(File file) {
+		files.remove(file);
+		if (file.delete() || !file.exists())
+			return;
+
+		// Some platforms refuse to delete a file while a mapped window of a
+		// closed reader is not yet collected
+		System.gc();
+		if (!file.delete() && file.exists()) {
+			System.err.println("Cannot delete temporary file: " + file);
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Compares two records word by word.
+	 */
+	private static int compare(long[] a, int i, long[] b, int j) {
+		for (int k = 0; k < WORDS; k++) {
+			if (a[i + k] != b[j + k])
+				return a[i + k] < b[j + k] ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Sorts the records with indices from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive).
+	 */
+	private void sort(long[] records, int from, int to) {
+		while (to - from > 16) {
+			System.arraycopy(records, ((from + to) >>> 1) * WORDS, pivot, 0,
+					WORDS);
+
+			int i = from;
+			int j = to - 1;
+			while (i <= j) {
+				while (compare(records, i * WORDS, pivot, 0) < 0)
+					i++;
+				while (compare(records, j * WORDS, pivot, 0) > 0)
+					j--;
+				if (i <= j)
+					swap(records, i++, j--);
+			}
+
+			// Recurse into the smaller part only
+			if (j - from < to - i) {
+				sort(records, from, j + 1);
+				from = i;
+			} else {
+				sort(records, i, to);
+				to = j + 1;
+			}
+		}
+
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from
+					&& compare(records, (j - 1) * WORDS, records, j * WORDS) > 0; j--) {
+				swap(records, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(long[] records, int i, int j) {
+		for (int k = 0; k < WORDS; k++) {
+			long word = records[i * WORDS + k];
+			records[i * WORDS + k] = records[j * WORDS + k];
+			records[j * WORDS + k] = word;
+		}
+	}
+
+	/**
+	 * Reads the records of a file through memory-mapped windows.
+	 */
+	private static class RecordReader implements Comparable<RecordReader>,
+			Closeable {
+
+		final long[] record = new long[WORDS];
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final long length;
+
+		private long position;
+		private MappedByteBuffer window;
+
+		RecordReader(File file) throws IOException {
+			this.file = new RandomAccessFile(file, "r");
+			this.channel = this.file.getChannel();
+			this.length = channel.size();
+		}
+
+		/**
+		 * Reads the next record.
+		 *
+		 * @return <code>false</code> if the end of the file was reached.
+		 */
+		boolean next() throws IOException {
+			if (window == null || !window.hasRemaining()) {
+				if (position == length)
+					return false;
+
+				long size = Math.min(length - position,
+						(long) WINDOW_RECORDS * RECORD_SIZE);
+				window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						size);
+				position += size;
+			}
+
+			for (int i = 0; i < WORDS; i++) {
+				record[i] = window.getLong();
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			window = null;
+			file.close();
+		}
+
+		@Override
+		public int compareTo(RecordReader target) {
+			return compare(record, 0, target.record, 0);
+		}
+	}
+
+	/**
+	 * Writes records sequentially to a file.
+	 */
+	private static class RecordWriter implements Closeable {
+
+		long count;
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer
+				.allocateDirect(WRITE_RECORDS * RECORD_SIZE);
+
+		RecordWriter(File file) throws IOException {
+			this.file = new RandomAccessFile(file, "rw");
+			this.file.setLength(0);
+			this.channel = this.file.getChannel();
+		}
+
+		void write(long[] records, int offset) throws IOException {
+			if (!buffer.hasRemaining())
+				flush();
+
+			for (int i = 0; i < WORDS; i++) {
+				buffer.putLong(records[offset + i]);
+			}
+			count++;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		long seed;
+		File directory;
+		int runRecords;
+		boolean canonical;
+		try {
+			seed = Long.parseLong(args[0]);
+			directory = args.length > 1 ? new File(args[1]) : Files
+					.createTempDirectory("explorer").toFile();
+			runRecords = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 22;
+			canonical = args.length > 3 && Boolean.parseBoolean(args[3]);
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+			System.exit(1);
+			return;
+		}
+
+		CardDeck deck = new CardDeck();
+		deck.shuffle(seed);
+
+		long start = System.nanoTime();
+		Explorer explorer = new Explorer(directory, runRecords,
+				canonical);
+		explorer.explore(new GameState(deck));
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Layers:       " + explorer.getLayers());
+		System.out.println("Reachable:    " + explorer.getReachable() + " in "
+				+ String.format("%.1f", seconds) + " s");
+		System.out.println("Dead ends:    " + explorer.getDeadEnds());
+		System.out.println("Wins:         " + explorer.getWins());
+		System.out.println("Shortest win: " + explorer.getShortestWin());
+	}
+}
@@ -0,0 +1,116 @@
+package Solver;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash set of primitive <code>long</code> values, used to
+ * remember visited positions without boxing.
+ *
+ * @author Pyck Nicolas
+ */
+class LongHashSet {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final int capacity;
+
+	private long[] keys;
+	private int size;
+	private int threshold;
+	private boolean containsZero;
+
+	/**
+	 * Default constructor.
+	 */
+	LongHashSet() {
+		this(1 << 16);
+	}
+
+	/**
+	 * Constructor with a specified initial capacity.
+	 *
+	 * @param capacity
+	 *            The initial capacity, rounded up to a power of two.
+	 */
+	LongHashSet(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+		keys = new long[this.capacity];
+		threshold = (int) (this.capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Removes all values from the set, shrinking it back to its initial
+	 * capacity.
+	 */
+	void clear() {
+		if (keys.length > capacity) {
+			keys = new long[capacity];
+			threshold = (int) (capacity * LOAD_FACTOR);
+		} else {
+			Arrays.fill(keys, 0);
+		}
+		size = 0;
+		containsZero = false;
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param key
+	 *            The value to be added.
+	 * @return <code>true</code> if the value was not yet contained in the set,
+	 *         <code>false</code> otherwise.
+	 */
+	boolean add(long key) {
+		if (key == 0) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+
+		int mask = keys.length - 1;
+		int i = mix(key) & mask;
+		while (keys[i] != 0) {
+			if (keys[i] == key)
+				return false;
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		if (++size > threshold)
+			rehash();
+		return true;
+	}
+
+	/**
+	 * @return The number of values contained in the set.
+	 */
+	int size() {
+		return size;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		keys = new long[oldKeys.length << 1];
+		threshold = (int) (keys.length * LOAD_FACTOR);
+
+		int mask = keys.length - 1;
+		for (long key : oldKeys) {
+			if (key != 0) {
+				int i = mix(key) & mask;
+				while (keys[i] != 0)
+					i = (i + 1) & mask;
+				keys[i] = key;
+			}
+		}
+	}
+
+	static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -0,0 +1,198 @@
+package Solver;
+
+import Card.CardStack;
+import Rules.RuleTables;
+import State.GameState;
+import State.Move;
+
+/**
+ * Enumerates every legal move of a GameState into a reusable buffer of
+ * primitive encoded moves: runs of face up Cards onto the next higher Card of
+ * the same suit, Kings onto empty play stacks, spare Cards onto play stacks
+ * and flips of covered top Cards. Generating moves allocates nothing.
+ *
+ * A move is encoded in an <code>int</code> holding the source stack index,
+ * the target stack index and the number of Cards moved, see
+ * {@link #encode(int, int, int)}. Stacks are addressed by a single index:
+ * <code>0</code> to <code>7</code> are the play stacks, <code>8</code> to
+ * <code>11</code> the spare stacks. A MoveGenerator must not be shared
+ * between threads.
+ *
+ * @author Pyck Nicolas
+ */
+public class MoveGenerator {
+
+	/**
+	 * Upper bound for the number of legal moves of a single position: one
+	 * move per Card onto its successor, one flip per stack and every King onto
+	 * every play stack.
+	 */
+	public static final int MAX_MOVES = Board.CARDS + Board.STACKS + 4
+			* Board.PLAY_STACKS;
+
+	private final int[] moves = new int[MAX_MOVES];
+	private final byte[] stackOf = new byte[Board.CARDS];
+	private final byte[] indexOf = new byte[Board.CARDS];
+	private final CardStack[] stacks = new CardStack[Board.STACKS];
+
+	private int count;
+
+	/**
+	 * Encodes a move of the top <code>count</code> Cards of the source stack
+	 * onto the target stack.
+	 *
+	 * @param source
+	 *            The index of the source stack.
+	 * @param target
+	 *            The index of the target stack.
+	 * @param count
+	 *            The number of Cards moved, <code>0</code> for a flip.
+	 * @return The encoded move.
+	 */
+	public static int encode(int source, int target, int count) {
+		return source | target << 4 | count << 8;
+	}
+
+	/**
+	 * Encodes the flip of the top Card of a stack.
+	 *
+	 * @param stack
+	 *            The index of the stack.
+	 * @return The encoded move.
+	 */
+	public static int encodeFlip(int stack) {
+		return encode(stack, stack, 0);
+	}
+
+	/**
+	 * @return The index of the source stack of an encoded move.
+	 */
+	public static int source(int move) {
+		return move & 0xF;
+	}
+
+	/**
+	 * @return The index of the target stack of an encoded move.
+	 */
+	public static int target(int move) {
+		return (move >> 4) & 0xF;
+	}
+
+	/**
+	 * @return The number of Cards moved by an encoded move.
+	 */
+	public static int count(int move) {
+		return move >> 8;
+	}
+
+	/**
+	 * @return <code>true</code> if the encoded move is a flip,
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isFlip(int move) {
+		return count(move) == 0;
+	}
+
+	/**
+	 * Decodes a move.
+	 *
+	 * @param move
+	 *            The encoded move.
+	 * @return The decoded Move.
+	 */
+	public static Move toMove(int move) {
+		return new Move(source(move), target(move), count(move));
+	}
+
+	/**
+	 * Generates all legal moves of the specified GameState, replacing the
+	 * moves of the previous call.
+	 *
+	 * @param state
+	 *            The GameState to be examined.
+	 * @return The number of legal moves.
+	 */
+	public int generate(GameState state) {
+		CardStack[] playStacks = state.getPlayStacks();
+		CardStack[] spareStacks = state.getSpareStacks();
+		System.arraycopy(playStacks, 0, stacks, 0, Board.PLAY_STACKS);
+		System.arraycopy(spareStacks, 0, stacks, Board.PLAY_STACKS,
+				Board.SPARE_STACKS);
+
+		count = 0;
+
+		// Locate every face up Card and flip every covered top Card
+		for (int i = 0; i < Board.CARDS; i++) {
+			stackOf[i] = -1;
+		}
+		for (int i = 0; i < Board.STACKS; i++) {
+			CardStack stack = stacks[i];
+			int size = stack.getSize();
+			for (int j = 0; j < size; j++) {
+				if (!stack.isFacingDown(j)) {
+					int id = stack.idAt(j);
+					stackOf[id] = (byte) i;
+					indexOf[id] = (byte) j;
+				}
+			}
+			if (size > 0 && stack.isFacingDown(size - 1))
+				moves[count++] = encodeFlip(i);
+		}
+
+		for (int target = 0; target < Board.PLAY_STACKS; target++) {
+			CardStack stack = stacks[target];
+			int size = stack.getSize();
+			if (size > 0) {
+				// The next lower Card of the same suit onto the top Card
+				int card = RuleTables.predecessor(stack.idAt(size - 1));
+				if (card >= 0)
+					add(card, target);
+			} else {
+				// Any King onto the empty play stack
+				for (int king = Board.RANKS - 1; king < Board.CARDS; king += Board.RANKS) {
+					add(king, target);
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private void add(int card, int target) {
+		int source = stackOf[card];
+		if (source >= 0 && source != target)
+			moves[count++] = encode(source, target,
+					stacks[source].getSize() - indexOf[card]);
+	}
+
+	/**
+	 * @return The number of moves generated by the last call to
+	 *         {@link #generate(GameState)}.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the move, below {@link #getCount()}.
+	 * @return The encoded move at the specified index.
+	 */
+	public int get(int index) {
+		return moves[index];
+	}
+
+	/**
+	 * Copies the generated moves into a buffer.
+	 *
+	 * @param buffer
+	 *            The buffer receiving the encoded moves.
+	 * @param offset
+	 *            The position of the first move in the buffer.
+	 * @return The number of moves copied.
+	 */
+	public int copyTo(int[] buffer, int offset) {
+		System.arraycopy(moves, 0, buffer, offset, count);
+		return count;
+	}
+}
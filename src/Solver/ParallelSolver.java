@@ -0,0 +1,279 @@
+package Solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import State.GameState;
+
+/**
+ * A parallel variant of the Solver that splits the search tree over a
+ * ForkJoinPool. Every task searches depth-first on its own Board and hands
+ * sibling moves to idle workers through work stealing, while all tasks share
+ * a single lock-free table of visited positions.
+ *
+ * @author Pyck Nicolas
+ */
+public class ParallelSolver {
+
+	/**
+	 * Number of positions a task searches before it publishes its node count
+	 * and checks whether the search was stopped.
+	 */
+	private static final int BATCH = 1 << 12;
+
+	private final ForkJoinPool pool;
+	private final long nodeLimit;
+	private final int capacity;
+
+	/**
+	 * Default constructor using all available processors.
+	 */
+	public ParallelSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor with a specified parallelism and no node limit.
+	 *
+	 * @param parallelism
+	 *            The number of worker threads.
+	 */
+	public ParallelSolver(int parallelism) {
+		this(parallelism, Long.MAX_VALUE, 1 << 24);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parallelism
+	 *            The number of worker threads.
+	 * @param nodeLimit
+	 *            The maximum number of positions to be searched.
+	 * @param capacity
+	 *            The number of positions the visited table can hold.
+	 */
+	public ParallelSolver(int parallelism, long nodeLimit, int capacity) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.nodeLimit = nodeLimit;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Searches a winning move sequence for the specified GameState. The
+	 * GameState itself is left untouched.
+	 *
+	 * @param state
+	 *            The GameState to be solved.
+	 * @return The SolverResult of the search.
+	 */
+	public SolverResult solve(GameState state) {
+		long start = System.nanoTime();
+
+		Search search = new Search();
+		Board board = new Board(state);
+		search.visited.add(board.hash);
+
+		if (board.isDead())
+			return Solver.result(SolverResult.Outcome.Unsolvable, null, 0, 1,
+					start);
+
+		pool.invoke(new SearchTask(search, board, new int[0]));
+
+		long nodes = search.nodes.get();
+		if (search.solution != null)
+			return Solver.result(SolverResult.Outcome.Solved,
+					search.solution, search.solution.length, nodes, start);
+		else if (search.aborted)
+			return Solver.result(SolverResult.Outcome.Aborted, null, 0, nodes,
+					start);
+		else
+			return Solver.result(SolverResult.Outcome.Unsolvable, null, 0,
+					nodes, start);
+	}
+
+	/**
+	 * Shuts down the worker threads of the ParallelSolver.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * The state shared by all tasks of a single search.
+	 */
+	private class Search {
+		final ConcurrentLongHashSet visited = new ConcurrentLongHashSet(
+				capacity);
+		final AtomicLong nodes = new AtomicLong(1);
+
+		volatile int[] solution;
+		volatile boolean aborted;
+
+		boolean isStopped() {
+			return solution != null || aborted;
+		}
+
+		synchronized void solved(int[] moves) {
+			if (solution == null)
+				solution = moves;
+		}
+
+		void count(long n) {
+			if (nodes.addAndGet(n) >= nodeLimit)
+				aborted = true;
+		}
+	}
+
+	/**
+	 * A depth-first search of the subtree below a single position.
+	 */
+	private static class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Search search;
+		private final Board board;
+		private final int[] prefix;
+
+		/**
+		 * @param search
+		 *            The shared search state.
+		 * @param board
+		 *            The already visited root position of the task.
+		 * @param prefix
+		 *            The moves leading from the initial position to the
+		 *            root position.
+		 */
+		SearchTask(Search search, Board board, int[] prefix) {
+			this.search = search;
+			this.board = board;
+			this.prefix = prefix;
+		}
+
+		@Override
+		protected void compute() {
+			List<SearchTask> forked = new ArrayList<SearchTask>();
+			try {
+				search(forked);
+			} catch (IllegalStateException e) {
+				search.aborted = true;
+			}
+
+			for (SearchTask task : forked) {
+				task.join();
+			}
+		}
+
+		private void search(List<SearchTask> forked) {
+			if (board.isWon()) {
+				search.solved(prefix);
+				return;
+			}
+
+			int[] path = new int[64];
+			int[] moves = new int[path.length * Board.MAX_MOVES];
+			int[] counts = new int[path.length];
+			int[] cursors = new int[path.length];
+
+			long nodes = 0;
+			int depth = 0;
+
+			counts[0] = board.generate(moves, 0);
+			counts[0] = split(moves, counts[0], path, depth, forked);
+
+			while (true) {
+				if (cursors[depth] == counts[depth]) {
+					if (depth == 0)
+						break;
+
+					depth--;
+					board.undo(path[depth]);
+					continue;
+				}
+
+				int move = moves[depth * Board.MAX_MOVES + cursors[depth]++];
+				board.apply(move);
+
+				if (!search.visited.add(board.hash)
+						|| Board.isFlip(move)
+						&& board.isDeadlocked(Board.source(move))) {
+					board.undo(move);
+					continue;
+				}
+
+				path[depth++] = move;
+
+				if (board.isWon()) {
+					search.solved(concat(path, depth));
+					break;
+				}
+
+				if (++nodes == BATCH) {
+					search.count(nodes);
+					nodes = 0;
+					if (search.isStopped())
+						break;
+				}
+
+				if (depth == path.length) {
+					path = Arrays.copyOf(path, depth * 2);
+					moves = Arrays.copyOf(moves, depth * 2 * Board.MAX_MOVES);
+					counts = Arrays.copyOf(counts, depth * 2);
+					cursors = Arrays.copyOf(cursors, depth * 2);
+				}
+
+				int offset = depth * Board.MAX_MOVES;
+				counts[depth] = board.generate(moves, offset);
+				counts[depth] = split(moves, counts[depth], path, depth,
+						forked);
+				cursors[depth] = 0;
+			}
+
+			search.count(nodes);
+		}
+
+		/**
+		 * Hands all but the first move of a position to new tasks when the
+		 * pool is running low on queued work.
+		 *
+		 * @return The number of moves left to the current task.
+		 */
+		private int split(int[] moves, int count, int[] path, int depth,
+				List<SearchTask> forked) {
+			if (count < 2 || getSurplusQueuedTaskCount() > 2)
+				return count;
+
+			int offset = depth * Board.MAX_MOVES;
+			for (int i = 1; i < count; i++) {
+				int move = moves[offset + i];
+
+				Board child = new Board(board);
+				child.apply(move);
+				if (!search.visited.add(child.hash) || Board.isFlip(move)
+						&& child.isDeadlocked(Board.source(move)))
+					continue;
+				search.count(1);
+
+				int[] childPrefix = concat(path, depth);
+				childPrefix = Arrays.copyOf(childPrefix, depth
+						+ prefix.length + 1);
+				childPrefix[childPrefix.length - 1] = move;
+
+				SearchTask task = new SearchTask(search, child, childPrefix);
+				task.fork();
+				forked.add(task);
+			}
+			return 1;
+		}
+
+		private int[] concat(int[] path, int depth) {
+			int[] moves = Arrays.copyOf(prefix, prefix.length + depth);
+			System.arraycopy(path, 0, moves, prefix.length, depth);
+			return moves;
+		}
+	}
+}
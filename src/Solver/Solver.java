@@ -0,0 +1,187 @@
+package Solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import State.GameState;
+import State.Move;
+
+/**
+ * A headless depth-first solver that either finds a winning move sequence for
+ * a GameState or proves it unwinnable. The search runs on a primitive Board
+ * and applies and reverts moves in place, so no GameState is ever copied.
+ *
+ * Visited positions are remembered either exactly, in a table on the heap
+ * that grows with the search, or in a fixed size TranspositionTable that may
+ * forget positions and then searches them again. In the TranspositionTable,
+ * every position is weighted by the number of positions searched below it.
+ *
+ * A search gives up, with an Aborted SolverResult, once it reaches its node
+ * limit or once its thread is interrupted.
+ *
+ * A Solver reuses its visited position table between searches and must
+ * therefore not be shared between threads.
+ *
+ * @author Pyck Nicolas
+ */
+public class Solver {
+
+	/**
+	 * Mask of the node count at which the search checks for interruption.
+	 */
+	private static final long INTERRUPT_CHECK = (1 << 12) - 1;
+
+	private final long nodeLimit;
+	private final LongHashSet visited;
+	private final TranspositionTable table;
+
+	/**
+	 * Default constructor for a Solver without a node limit.
+	 */
+	public Solver() {
+		this(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor for a Solver that gives up after a number of positions.
+	 *
+	 * @param nodeLimit
+	 *            The maximum number of positions to be searched.
+	 */
+	public Solver(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+		this.visited = new LongHashSet();
+		this.table = null;
+	}
+
+	/**
+	 * Constructor for a Solver that remembers visited positions in a fixed
+	 * size TranspositionTable, for searches too deep for the heap.
+	 *
+	 * @param nodeLimit
+	 *            The maximum number of positions to be searched.
+	 * @param table
+	 *            The TranspositionTable, emptied at the start of every
+	 *            search.
+	 */
+	public Solver(long nodeLimit, TranspositionTable table) {
+		this.nodeLimit = nodeLimit;
+		this.visited = null;
+		this.table = table;
+	}
+
+	/**
+	 * Searches a winning move sequence for the specified GameState. The
+	 * GameState itself is left untouched.
+	 *
+	 * @param state
+	 *            The GameState to be solved.
+	 * @return The SolverResult of the search.
+	 */
+	public SolverResult solve(GameState state) {
+		long start = System.nanoTime();
+
+		Board board = new Board(state);
+		if (table != null)
+			table.newSearch();
+		else
+			visited.clear();
+		visit(board.hash);
+
+		int[] path = new int[64];
+		int[] moves = new int[path.length * Board.MAX_MOVES];
+		int[] counts = new int[path.length];
+		int[] cursors = new int[path.length];
+		long[] entered = new long[path.length];
+
+		long nodes = 1;
+		int depth = 0;
+
+		if (board.isWon())
+			return result(SolverResult.Outcome.Solved, path, 0, nodes, start);
+		if (board.isDead())
+			return result(SolverResult.Outcome.Unsolvable, path, 0, nodes,
+					start);
+
+		counts[0] = board.generate(moves, 0);
+
+		while (true) {
+			if (cursors[depth] == counts[depth]) {
+				if (table != null)
+					table.store(board.hash, (int) Math.min(Integer.MAX_VALUE,
+							nodes - entered[depth]));
+				if (depth == 0)
+					return result(SolverResult.Outcome.Unsolvable, path, 0,
+							nodes, start);
+
+				depth--;
+				board.undo(path[depth]);
+				continue;
+			}
+
+			int move = moves[depth * Board.MAX_MOVES + cursors[depth]++];
+			board.apply(move);
+
+			if (!visit(board.hash)
+					|| Board.isFlip(move)
+					&& board.isDeadlocked(Board.source(move))) {
+				board.undo(move);
+				continue;
+			}
+
+			path[depth++] = move;
+			nodes++;
+
+			if (board.isWon())
+				return result(SolverResult.Outcome.Solved, path, depth, nodes,
+						start);
+			if (nodes >= nodeLimit
+					|| (nodes & INTERRUPT_CHECK) == 0
+					&& Thread.currentThread().isInterrupted())
+				return result(SolverResult.Outcome.Aborted, path, 0, nodes,
+						start);
+
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+				moves = Arrays.copyOf(moves, depth * 2 * Board.MAX_MOVES);
+				counts = Arrays.copyOf(counts, depth * 2);
+				cursors = Arrays.copyOf(cursors, depth * 2);
+				entered = Arrays.copyOf(entered, depth * 2);
+			}
+
+			counts[depth] = board.generate(moves, depth * Board.MAX_MOVES);
+			cursors[depth] = 0;
+			entered[depth] = nodes;
+		}
+	}
+
+	/**
+	 * Marks a position as visited.
+	 *
+	 * @param hash
+	 *            The hash of the position.
+	 * @return <code>true</code> if the position was not visited yet,
+	 *         <code>false</code> otherwise.
+	 */
+	private boolean visit(long hash) {
+		if (table == null)
+			return visited.add(hash);
+
+		if (table.probe(hash) != TranspositionTable.NOT_FOUND)
+			return false;
+		table.store(hash, 0);
+		return true;
+	}
+
+	static SolverResult result(SolverResult.Outcome outcome,
+			int[] path, int length, long nodes, long start) {
+		List<Move> moves = new ArrayList<Move>(length);
+		for (int i = 0; i < length; i++) {
+			moves.add(Board.toMove(path[i]));
+		}
+
+		return new SolverResult(outcome, moves, nodes, System.nanoTime()
+				- start);
+	}
+}
@@ -0,0 +1,95 @@
+package Solver;
+
+import java.util.Collections;
+import java.util.List;
+
+import State.Move;
+
+/**
+ * The result of a search: its outcome, the winning moves if any and some
+ * search statistics.
+ *
+ * @author Pyck Nicolas
+ */
+public class SolverResult {
+
+	/**
+	 * Search outcome enumeration
+	 *
+	 * @author Pyck Nicolas
+	 */
+	public enum Outcome {
+		Solved, Unsolvable, Aborted;
+	};
+
+	private final Outcome outcome;
+	private final List<Move> moves;
+	private final long nodes;
+	private final long time;
+
+	/**
+	 * SolverResult constructor.
+	 *
+	 * @param outcome
+	 *            The outcome of the search.
+	 * @param moves
+	 *            The winning moves, empty if the search did not solve the
+	 *            deal.
+	 * @param nodes
+	 *            The number of positions searched.
+	 * @param time
+	 *            The duration of the search in nanoseconds.
+	 */
+	public SolverResult(Outcome outcome, List<Move> moves, long nodes,
+			long time) {
+		this.outcome = outcome;
+		this.moves = Collections.unmodifiableList(moves);
+		this.nodes = nodes;
+		this.time = time;
+	}
+
+	/**
+	 * @return Outcome of the search.
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * @return <code>true</code> if a winning move sequence was found,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSolved() {
+		return outcome == Outcome.Solved;
+	}
+
+	/**
+	 * @return The winning move sequence, empty if the deal was not solved.
+	 */
+	public List<Move> getMoves() {
+		return moves;
+	}
+
+	/**
+	 * @return The number of positions searched.
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The duration of the search in nanoseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	/**
+	 * @return String representation of the SolverResult.
+	 */
+	public String toString() {
+		return outcome + " (" + moves.size() + " moves, " + nodes
+				+ " nodes, " + (time / 1000000) + " ms)";
+	}
+}
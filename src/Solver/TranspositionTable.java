@@ -0,0 +1,262 @@
+package Solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed size transposition table stored outside the Java heap, mapping
+ * 64-bit position hashes to non-negative <code>int</code> values.
+ *
+ * The table is split into segments of at most 1 GB, memory-mapped from a
+ * temporary file that is deleted as soon as the platform allows. Unlike
+ * direct ByteBuffers, mapped segments are not limited by
+ * <code>-XX:MaxDirectMemorySize</code>, which defaults to the maximum heap
+ * size, so the table can be sized beyond 2 GB and beyond the heap without any
+ * JVM flags. The operating system keeps the table in memory as far as it
+ * fits and otherwise pages it to the file. Entries of 16 bytes are
+ * grouped in buckets of four that share a cache line; a key is only ever
+ * stored in its own bucket. Once a bucket is full, the Replacement policy of
+ * the table decides which entry is overwritten.
+ *
+ * Every entry is stamped with the generation in which it was stored. Calling
+ * {@link #newSearch()} starts a new generation, which empties the table
+ * without touching its memory. A TranspositionTable must not be shared between
+ * threads.
+ *
+ * @author Pyck Nicolas
+ */
+public class TranspositionTable {
+
+	/**
+	 * The policies deciding which entry of a full bucket is replaced.
+	 */
+	public enum Replacement {
+		/**
+		 * Always store the new entry, in a slot chosen by its key.
+		 */
+		Always,
+		/**
+		 * Replace the entry with the smallest value, so entries with large
+		 * values, such as the size of an expensive subtree, survive longest.
+		 */
+		SmallestValue,
+		/**
+		 * Never replace an entry of the current generation; the new entry is
+		 * dropped instead.
+		 */
+		KeepExisting
+	}
+
+	/**
+	 * Value returned by {@link #probe(long)} for a key that is not stored.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Number of bytes of a single entry.
+	 */
+	public static final int ENTRY_SIZE = 16;
+
+	private static final int BUCKET_ENTRIES = 4;
+	private static final int BUCKET_SIZE = BUCKET_ENTRIES * ENTRY_SIZE;
+	private static final int SEGMENT_BITS = 30;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+	private static final int VALUE = 8;
+	private static final int GENERATION = 12;
+
+	private final ByteBuffer[] segments;
+	private final long bucketMask;
+	private final Replacement replacement;
+
+	private int generation = 1;
+	private long size;
+
+	/**
+	 * Constructor with the backing file in the default temporary directory.
+	 *
+	 * @param bytes
+	 *            The size of the table in bytes, rounded down to a power of
+	 *            two of at least 64 bytes.
+	 * @param replacement
+	 *            The Replacement policy for full buckets.
+	 * @throws IOException
+	 *             If the backing file could not be created or mapped.
+	 */
+	public TranspositionTable(long bytes, Replacement replacement)
+			throws IOException {
+		this(bytes, replacement, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bytes
+	 *            The size of the table in bytes, rounded down to a power of
+	 *            two of at least 64 bytes.
+	 * @param replacement
+	 *            The Replacement policy for full buckets.
+	 * @param directory
+	 *            The directory receiving the backing file, or
+	 *            <code>null</code> for the default temporary directory.
+	 * @throws IOException
+	 *             If the backing file could not be created or mapped.
+	 */
+	public TranspositionTable(long bytes, Replacement replacement,
+			File directory) throws IOException {
+		long length = Long.highestOneBit(Math.max(bytes, BUCKET_SIZE));
+		int segmentSize = (int) Math.min(length, 1L << SEGMENT_BITS);
+
+		Path path = directory == null ? Files.createTempFile("transposition",
+				".tmp") : Files.createTempFile(directory.toPath(),
+				"transposition", ".tmp");
+		segments = new ByteBuffer[(int) (length / segmentSize)];
+
+		// The file is deleted on close, or on platforms that cannot delete a
+		// mapped file once the segments are unmapped as well. Mapping extends
+		// the sparse file, whose untouched pages read as zero.
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.SPARSE,
+				StandardOpenOption.DELETE_ON_CLOSE)) {
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+						(long) i * segmentSize, segmentSize).order(
+						ByteOrder.nativeOrder());
+			}
+		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+
+		this.bucketMask = length / BUCKET_SIZE - 1;
+		this.replacement = replacement;
+	}
+
+	/**
+	 * Starts a new generation, after which the table is empty.
+	 */
+	public void newSearch() {
+		generation++;
+		size = 0;
+
+		// The generation stamp of untouched memory is 0
+		if (generation == 0) {
+			for (ByteBuffer segment : segments) {
+				for (int i = GENERATION; i < segment.capacity(); i += ENTRY_SIZE) {
+					segment.putInt(i, 0);
+				}
+			}
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Looks up the value stored for a key.
+	 *
+	 * @param key
+	 *            The 64-bit hash of the position.
+	 * @return The value stored in the current generation, or
+	 *         <code>NOT_FOUND</code>.
+	 */
+	public int probe(long key) {
+		long bucket = bucketOffset(key);
+		ByteBuffer segment = segments[(int) (bucket >>> SEGMENT_BITS)];
+		int offset = (int) (bucket & SEGMENT_MASK);
+
+		for (int i = 0; i < BUCKET_ENTRIES; i++, offset += ENTRY_SIZE) {
+			if (segment.getInt(offset + GENERATION) == generation
+					&& segment.getLong(offset) == key)
+				return segment.getInt(offset + VALUE);
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Stores the value for a key, replacing the previous value of the key or,
+	 * if the bucket of the key is full, an entry chosen by the Replacement
+	 * policy.
+	 *
+	 * @param key
+	 *            The 64-bit hash of the position.
+	 * @param value
+	 *            The non-negative value to be stored.
+	 * @return <code>true</code> if the value was stored, <code>false</code> if
+	 *         the Replacement policy dropped it.
+	 */
+	public boolean store(long key, int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("Negative value: " + value);
+
+		long bucket = bucketOffset(key);
+		ByteBuffer segment = segments[(int) (bucket >>> SEGMENT_BITS)];
+		int first = (int) (bucket & SEGMENT_MASK);
+
+		int free = -1;
+		int victim = first;
+		int victimValue = Integer.MAX_VALUE;
+		for (int i = 0, offset = first; i < BUCKET_ENTRIES; i++, offset += ENTRY_SIZE) {
+			if (segment.getInt(offset + GENERATION) != generation) {
+				if (free < 0)
+					free = offset;
+			} else if (segment.getLong(offset) == key) {
+				segment.putInt(offset + VALUE, value);
+				return true;
+			} else if (segment.getInt(offset + VALUE) < victimValue) {
+				victim = offset;
+				victimValue = segment.getInt(offset + VALUE);
+			}
+		}
+
+		if (free >= 0) {
+			size++;
+		} else {
+			switch (replacement) {
+			case Always:
+				free = first + (int) (key >>> 62) * ENTRY_SIZE;
+				break;
+			case SmallestValue:
+				free = victim;
+				break;
+			case KeepExisting:
+				return false;
+			}
+		}
+
+		segment.putLong(free, key);
+		segment.putInt(free + VALUE, value);
+		segment.putInt(free + GENERATION, generation);
+		return true;
+	}
+
+	/**
+	 * @return The number of entries stored in the current generation.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return The maximum number of entries of the table.
+	 */
+	public long getCapacity() {
+		return (bucketMask + 1) * BUCKET_ENTRIES;
+	}
+
+	private long bucketOffset(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (key & bucketMask) * BUCKET_SIZE;
+	}
+}
@@ -0,0 +1,101 @@
+package Solver;
+
+/**
+ * An estimated win probability: the number of wins out of a number of
+ * independent trials, with a Wilson score interval at 95% confidence.
+ *
+ * @author Pyck Nicolas
+ */
+public class WinRateEstimate {
+
+	private static final double Z = 1.96;
+
+	private final long wins;
+	private final long trials;
+	private final long time;
+
+	/**
+	 * WinRateEstimate constructor.
+	 *
+	 * @param wins
+	 *            The number of won trials.
+	 * @param trials
+	 *            The number of trials.
+	 * @param time
+	 *            The duration of the estimation in nanoseconds.
+	 */
+	public WinRateEstimate(long wins, long trials, long time) {
+		this.wins = wins;
+		this.trials = trials;
+		this.time = time;
+	}
+
+	/**
+	 * @return The number of won trials.
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * @return The number of trials.
+	 */
+	public long getTrials() {
+		return trials;
+	}
+
+	/**
+	 * @return The observed win rate, <code>0</code> without trials.
+	 */
+	public double getWinRate() {
+		return trials > 0 ? (double) wins / trials : 0;
+	}
+
+	/**
+	 * @return The lower bound of the 95% confidence interval of the win rate.
+	 */
+	public double getLower() {
+		return getCenter() - getMargin();
+	}
+
+	/**
+	 * @return The upper bound of the 95% confidence interval of the win rate.
+	 */
+	public double getUpper() {
+		return getCenter() + getMargin();
+	}
+
+	private double getCenter() {
+		if (trials == 0)
+			return 0.5;
+
+		double n = trials;
+		return (getWinRate() + Z * Z / (2 * n)) / (1 + Z * Z / n);
+	}
+
+	private double getMargin() {
+		if (trials == 0)
+			return 0.5;
+
+		double n = trials;
+		double p = getWinRate();
+		return Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4 * n * n))
+				/ (1 + Z * Z / n);
+	}
+
+	/**
+	 * @return The duration of the estimation in nanoseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	/**
+	 * @return String representation of the WinRateEstimate.
+	 */
+	public String toString() {
+		return String.format("%.2f%% (95%% CI %.2f%% - %.2f%%)",
+				100 * getWinRate(), 100 * getLower(), 100 * getUpper());
+	}
+}
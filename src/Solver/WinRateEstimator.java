@@ -0,0 +1,190 @@
+package Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import State.GameState;
+
+/**
+ * Estimates how likely a GameState is won by playing random games, or
+ * playouts, from it on all cores. This measures the difficulty of a position
+ * rather than whether it can be won at all, and takes a fraction of the time
+ * of an exhaustive search.
+ *
+ * Every task plays its playouts on a single Board, which is restored by
+ * undoing the moves of a playout, so no GameState is ever copied. Playouts
+ * always end: every move joins a Card to its successor, moves a King to the
+ * bottom of a play stack or flips a Card, none of which is ever undone.
+ *
+ * @author Pyck Nicolas
+ */
+public class WinRateEstimator {
+
+	/**
+	 * The policies choosing the moves of a playout.
+	 */
+	public enum Policy {
+		/**
+		 * Choose any move at random.
+		 */
+		Random,
+		/**
+		 * Expose a covered Card whenever possible, otherwise choose any move
+		 * at random.
+		 */
+		Greedy
+	}
+
+	/**
+	 * Upper bound for the length of a playout.
+	 */
+	private static final int MAX_LENGTH = 128;
+
+	private final ForkJoinPool pool;
+	private final int parallelism;
+
+	/**
+	 * Default constructor using all available processors.
+	 */
+	public WinRateEstimator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor with a specified parallelism.
+	 *
+	 * @param parallelism
+	 *            The number of worker threads.
+	 */
+	public WinRateEstimator(int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Estimates the win rate of a GameState. The GameState itself is left
+	 * untouched. The result only depends on the seed and the parallelism, not
+	 * on the scheduling of the tasks.
+	 *
+	 * @param state
+	 *            The GameState to be estimated.
+	 * @param playouts
+	 *            The number of playouts.
+	 * @param policy
+	 *            The Policy choosing the moves of the playouts.
+	 * @param seed
+	 *            The seed of the random moves.
+	 * @return The WinRateEstimate of the playouts.
+	 */
+	public WinRateEstimate estimate(GameState state, int playouts,
+			Policy policy, long seed) {
+		long start = System.nanoTime();
+
+		Board board = new Board(state);
+		if (board.isWon())
+			return new WinRateEstimate(playouts, playouts, System.nanoTime()
+					- start);
+		if (board.isDead())
+			return new WinRateEstimate(0, playouts, System.nanoTime() - start);
+
+		List<PlayoutTask> tasks = new ArrayList<PlayoutTask>();
+		for (int i = 0; i < parallelism; i++) {
+			int count = playouts / parallelism
+					+ (i < playouts % parallelism ? 1 : 0);
+			if (count > 0)
+				tasks.add(new PlayoutTask(new Board(board), count, policy,
+						seed + i));
+		}
+		for (PlayoutTask task : tasks) {
+			pool.execute(task);
+		}
+
+		long wins = 0;
+		for (PlayoutTask task : tasks) {
+			wins += task.join();
+		}
+
+		return new WinRateEstimate(wins, playouts, System.nanoTime() - start);
+	}
+
+	/**
+	 * Shuts down the worker threads of the WinRateEstimator.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Plays a number of playouts from a Board and counts the wins.
+	 */
+	private static class PlayoutTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Board board;
+		private final int playouts;
+		private final Policy policy;
+		private final Random random;
+
+		private final int[] moves = new int[Board.MAX_MOVES];
+		private final int[] path = new int[MAX_LENGTH];
+
+		PlayoutTask(Board board, int playouts, Policy policy, long seed) {
+			this.board = board;
+			this.playouts = playouts;
+			this.policy = policy;
+			this.random = new Random(seed);
+		}
+
+		@Override
+		protected Long compute() {
+			long wins = 0;
+			for (int i = 0; i < playouts; i++) {
+				if (playout())
+					wins++;
+			}
+			return wins;
+		}
+
+		/**
+		 * Plays a single playout and restores the Board.
+		 *
+		 * @return <code>true</code> if the playout was won.
+		 */
+		private boolean playout() {
+			int length = 0;
+			boolean won = false;
+
+			while (true) {
+				int n = board.generate(moves, 0);
+				if (n == 0)
+					break;
+
+				int move = moves[0];
+				if (n > 1
+						&& (policy == Policy.Random || !board
+								.exposesCard(move)))
+					move = moves[random.nextInt(n)];
+
+				board.apply(move);
+				path[length++] = move;
+
+				if (board.isWon()) {
+					won = true;
+					break;
+				}
+				if (Board.isFlip(move)
+						&& board.isDeadlocked(Board.source(move)))
+					break;
+			}
+
+			while (length > 0) {
+				board.undo(path[--length]);
+			}
+			return won;
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package State;
 
-import java.util.Stack;
-
 import Card.Card;
 import Card.CardDeck;
 import Card.CardStack;
@@ -18,6 +16,12 @@ public class GameState {
 	private CardStack[] playStacks;
 	private CardStack[] spareStacks;
 
+	// Per play stack analysis for isPlayable, valid for the stack hash
+	private long[] analyzedHashes;
+	private boolean[] playableStacks;
+	private int[] lowestFaceUp;
+	private long[] coveredCards;
+
 	/**
 	 * Default constructor.
 	 * 
@@ -29,6 +33,19 @@ public class GameState {
 		initSpareStacks(deck);
 	}
 
+	/**
+	 * Constructor for a GameState consisting of the specified CardStacks.
+	 * 
+	 * @param playStacks
+	 *            The play CardStacks.
+	 * @param spareStacks
+	 *            The spare CardStacks.
+	 */
+	GameState(CardStack[] playStacks, CardStack[] spareStacks) {
+		this.playStacks = playStacks;
+		this.spareStacks = spareStacks;
+	}
+
 	/**
 	 * Constructor for a GameState that will be identical to the specified
 	 * GameState.
@@ -65,9 +82,8 @@ public class GameState {
 
 			// Flip the first 3 cards of stacks 2, 4 & 6
 			if (i % 2 != 0) {
-				Stack<Card> cards = playStacks[i].getCards();
 				for (int j = 0; j < 3; j++) {
-					cards.get(j).flip();
+					playStacks[i].flip(j);
 				}
 			}
 		}
@@ -86,7 +102,7 @@ public class GameState {
 
 		for (int i = 0; i < spareStacks.length; i++) {
 			spareStacks[i] = new CardStack(StackRules.SPARE_RULES);
-			spareStacks[i] = deck.pop(1);
+			spareStacks[i].push(deck.pop(1));
 		}
 
 		this.spareStacks = spareStacks;
@@ -122,19 +138,303 @@ public class GameState {
 	}
 
 	/**
-	 * Determines whether the GameState is considered playable.
+	 * Determines whether the GameState is considered playable. A GameState is
+	 * unplayable if any CardStack is unplayable, or if the lowest face up
+	 * Cards of several play stacks each wait for a successor lying face down
+	 * in the next of these stacks, in a cycle. Only play stacks that changed
+	 * since the previous call are examined again.
 	 * 
 	 * @return <code>true</code> if all CardStacks are still playable,
-	 *         <code>false</code> if any CardStack is unplayable.
+	 *         <code>false</code> if the GameState can no longer be completed.
 	 */
 	public boolean isPlayable() {
-		for (int i = 0; i < playStacks.length; i += 2) {
-			if (!playStacks[i].isPlayable())
+		analyze();
+
+		for (boolean playable : playableStacks) {
+			if (!playable)
+				return false;
+		}
+
+		for (int i = 0; i < playStacks.length; i++) {
+			int stack = i;
+			for (int steps = 0; steps < playStacks.length && stack >= 0; steps++) {
+				stack = waitsFor(stack);
+				if (stack == i)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private void analyze() {
+		int stacks = playStacks.length;
+		boolean all = analyzedHashes == null;
+		if (all) {
+			analyzedHashes = new long[stacks];
+			playableStacks = new boolean[stacks];
+			lowestFaceUp = new int[stacks];
+			coveredCards = new long[stacks];
+		}
+
+		for (int i = 0; i < stacks; i++) {
+			CardStack stack = playStacks[i];
+			long hash = stack.getHash();
+			if (!all && analyzedHashes[i] == hash)
+				continue;
+
+			analyzedHashes[i] = hash;
+			playableStacks[i] = stack.isPlayable();
+
+			long covered = 0;
+			int first = stack.firstFaceUp();
+			for (int j = 0; j < stack.getSize() && stack.isFacingDown(j); j++) {
+				covered |= 1L << stack.idAt(j);
+			}
+			coveredCards[i] = covered;
+			lowestFaceUp[i] = covered != 0 && first > 0 ? stack.idAt(first)
+					: -1;
+		}
+	}
+
+	/**
+	 * @return The index of the play stack holding the face down successor of
+	 *         the lowest face up Card of a play stack, or <code>-1</code>.
+	 */
+	private int waitsFor(int stack) {
+		int card = lowestFaceUp[stack];
+		int ranks = Card.Rank.values().length;
+		if (card < 0 || card % ranks == ranks - 1)
+			return -1;
+
+		long successor = 1L << (card + 1);
+		for (int i = 0; i < coveredCards.length; i++) {
+			if ((coveredCards[i] & successor) != 0)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a 64-bit hash of the GameState that is independent of the order
+	 * of the play CardStacks and of the order of the spare CardStacks. It is
+	 * combined from the Zobrist hashes of the CardStacks, so it costs constant
+	 * time per stack regardless of the number of Cards.
+	 * 
+	 * @return The canonical hash of the GameState.
+	 */
+	public long getHash() {
+		long hash = 0;
+		for (CardStack stack : playStacks) {
+			hash += mix(stack.getHash());
+		}
+		for (CardStack stack : spareStacks) {
+			hash += mix(~stack.getHash());
+		}
+		return hash;
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Returns the normal form of the GameState under the symmetries of the
+	 * rules: the suits are relabeled and the play and spare CardStacks are
+	 * sorted, neither of which changes any legal move up to the same
+	 * relabeling. Every relabeling of the suits is tried, sorting the stacks
+	 * by their relabeled Cards and facings, and the relabeling giving the
+	 * lexicographically smallest sequence of stacks is kept. The normal form
+	 * therefore does not depend on the order of the stacks or on the suits
+	 * themselves: two GameStates are equivalent if and only if their normal
+	 * forms are equal.
+	 * 
+	 * @return A new GameState equivalent to the GameState in normal form.
+	 */
+	public GameState canonicalize() {
+		int ranks = Card.Rank.values().length;
+		int[] labels = new int[Card.Suit.values().length];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = i;
+		}
+
+		int[] best = null;
+		CardStack[] play = null;
+		CardStack[] spare = null;
+		int[][] playKeys = null;
+		int[][] spareKeys = null;
+		do {
+			CardStack[] playOrder = playStacks.clone();
+			CardStack[] spareOrder = spareStacks.clone();
+			int[][] playOrderKeys = sortStacks(playOrder, labels);
+			int[][] spareOrderKeys = sortStacks(spareOrder, labels);
+
+			int order = best == null ? -1 : compareKeys(playOrderKeys,
+					playKeys);
+			if (order == 0)
+				order = compareKeys(spareOrderKeys, spareKeys);
+			if (order < 0) {
+				best = labels.clone();
+				play = playOrder;
+				spare = spareOrder;
+				playKeys = playOrderKeys;
+				spareKeys = spareOrderKeys;
+			}
+		} while (nextPermutation(labels));
+
+		for (int i = 0; i < play.length; i++) {
+			play[i] = relabel(play[i], StackRules.PLAY_RULES, best, ranks);
+		}
+		for (int i = 0; i < spare.length; i++) {
+			spare[i] = relabel(spare[i], StackRules.SPARE_RULES, best, ranks);
+		}
+
+		return new GameState(play, spare);
+	}
+
+	/**
+	 * Rearranges an array into the next permutation in lexicographic order.
+	 * 
+	 * @return <code>false</code> if the array held the last permutation.
+	 */
+	private static boolean nextPermutation(int[] values) {
+		int i = values.length - 2;
+		while (i >= 0 && values[i] >= values[i + 1])
+			i--;
+		if (i < 0)
+			return false;
+
+		int j = values.length - 1;
+		while (values[j] <= values[i])
+			j--;
+		swap(values, i, j);
+		for (int k = i + 1, l = values.length - 1; k < l; k++, l--) {
+			swap(values, k, l);
+		}
+		return true;
+	}
+
+	private static void swap(int[] values, int i, int j) {
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	private static CardStack relabel(CardStack stack, StackRules rules,
+			int[] labels, int ranks) {
+		CardStack result = new CardStack(rules);
+		for (int i = 0; i < stack.getSize(); i++) {
+			int id = stack.idAt(i);
+			result.push(Card.get(labels[id / ranks] * ranks + id % ranks),
+					stack.getFacing(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts CardStacks by their Cards after relabeling the suits.
+	 * 
+	 * @return The sort keys of the sorted CardStacks.
+	 */
+	private static int[][] sortStacks(CardStack[] stacks, int[] labels) {
+		int[][] keys = new int[stacks.length][];
+		for (int i = 0; i < stacks.length; i++) {
+			keys[i] = sortKey(stacks[i], labels);
+		}
+
+		for (int i = 1; i < stacks.length; i++) {
+			for (int j = i; j > 0 && compareKeys(keys[j - 1], keys[j]) > 0; j--) {
+				int[] key = keys[j];
+				keys[j] = keys[j - 1];
+				keys[j - 1] = key;
+
+				CardStack stack = stacks[j];
+				stacks[j] = stacks[j - 1];
+				stacks[j - 1] = stack;
+			}
+		}
+		return keys;
+	}
+
+	private static int[] sortKey(CardStack stack, int[] labels) {
+		int ranks = Card.Rank.values().length;
+		int[] key = new int[stack.getSize()];
+		for (int i = 0; i < key.length; i++) {
+			int id = stack.idAt(i);
+			key[i] = (labels[id / ranks] * ranks + id % ranks) << 1
+					| (stack.isFacingDown(i) ? 1 : 0);
+		}
+		return key;
+	}
+
+	private static int compareKeys(int[] a, int[] b) {
+		for (int i = 0; i < a.length && i < b.length; i++) {
+			if (a[i] != b[i])
+				return a[i] < b[i] ? -1 : 1;
+		}
+		return a.length - b.length;
+	}
+
+	private static int compareKeys(int[][] a, int[][] b) {
+		for (int i = 0; i < a.length; i++) {
+			int order = compareKeys(a[i], b[i]);
+			if (order != 0)
+				return order;
+		}
+		return 0;
+	}
+
+	@Override
+	/**
+	 * Compares two GameStates, treating the play CardStacks and the spare
+	 * CardStacks each as an unordered multiset of CardStacks.
+	 * 
+	 * @param target Target object with which the current GameState is to be compared.
+	 * @return <code>true</code> if both GameStates hold the same CardStacks,
+	 * 		   <code>false</code> otherwise.
+	 */
+	public boolean equals(Object target) {
+		if (!(target instanceof GameState))
+			return false;
+
+		GameState state = (GameState) target;
+		return getHash() == state.getHash()
+				&& sameStacks(playStacks, state.playStacks)
+				&& sameStacks(spareStacks, state.spareStacks);
+	}
+
+	private static boolean sameStacks(CardStack[] stacks, CardStack[] others) {
+		if (stacks.length != others.length)
+			return false;
+
+		boolean[] matched = new boolean[others.length];
+		for (CardStack stack : stacks) {
+			boolean found = false;
+			for (int i = 0; i < others.length && !found; i++) {
+				if (!matched[i] && stack.equals(others[i])) {
+					matched[i] = true;
+					found = true;
+				}
+			}
+			if (!found)
 				return false;
 		}
 		return true;
 	}
 
+	@Override
+	/**
+	 * @return Hash code of the GameState, derived from its canonical hash.
+	 */
+	public int hashCode() {
+		long hash = getHash();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
 	/**
 	 * @return A CardStack array containing all play CardStacks.
 	 */
@@ -0,0 +1,174 @@
+package State;
+
+import Card.CardStack;
+
+/**
+ * A single move on a GameState: either a run of Cards moved between two
+ * stacks or the flip of the top Card of a stack. Moves are immutable and can
+ * be applied to and reverted from a GameState.
+ *
+ * Stacks are addressed by a single index: <code>0</code> to <code>7</code>
+ * are the play stacks, <code>8</code> to <code>11</code> the spare stacks.
+ *
+ * @author Pyck Nicolas
+ */
+public class Move {
+
+	private final int source;
+	private final int target;
+	private final int count;
+
+	/**
+	 * Constructor for a Move of the top Cards of a stack onto another stack.
+	 *
+	 * @param source
+	 *            The index of the source stack.
+	 * @param target
+	 *            The index of the target stack.
+	 * @param count
+	 *            The number of Cards moved.
+	 */
+	public Move(int source, int target, int count) {
+		this.source = source;
+		this.target = target;
+		this.count = count;
+	}
+
+	/**
+	 * Creates the Move that flips the top Card of a stack.
+	 *
+	 * @param stack
+	 *            The index of the stack.
+	 * @return The flip Move.
+	 */
+	public static Move flip(int stack) {
+		return new Move(stack, stack, 0);
+	}
+
+	/**
+	 * @return The index of the source stack.
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * @return The index of the target stack, equal to the source stack for a
+	 *         flip.
+	 */
+	public int getTarget() {
+		return target;
+	}
+
+	/**
+	 * @return The number of Cards moved, <code>0</code> for a flip.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return <code>true</code> if the move flips the top Card of the source
+	 *         stack, <code>false</code> otherwise.
+	 */
+	public boolean isFlip() {
+		return count == 0;
+	}
+
+	/**
+	 * @return The bitmask of the stacks changed by the move, bit
+	 *         <code>i</code> being set for the stack with index <code>i</code>.
+	 */
+	public long getStackMask() {
+		return 1L << source | 1L << target;
+	}
+
+	/**
+	 * Returns the CardStack of a GameState with the specified index.
+	 *
+	 * @param state
+	 *            The GameState containing the stack.
+	 * @param index
+	 *            The index of the stack.
+	 * @return The CardStack with the specified index.
+	 */
+	public static CardStack getStack(GameState state, int index) {
+		CardStack[] playStacks = state.getPlayStacks();
+		if (index < playStacks.length)
+			return playStacks[index];
+		else
+			return state.getSpareStacks()[index - playStacks.length];
+	}
+
+	/**
+	 * Returns the index of a CardStack within a GameState.
+	 *
+	 * @param state
+	 *            The GameState containing the stack.
+	 * @param stack
+	 *            The CardStack.
+	 * @return The index of the CardStack, <code>-1</code> if the GameState
+	 *         does not contain the CardStack.
+	 */
+	public static int indexOf(GameState state, CardStack stack) {
+		CardStack[] playStacks = state.getPlayStacks();
+		for (int i = 0; i < playStacks.length; i++) {
+			if (playStacks[i] == stack)
+				return i;
+		}
+
+		CardStack[] spareStacks = state.getSpareStacks();
+		for (int i = 0; i < spareStacks.length; i++) {
+			if (spareStacks[i] == stack)
+				return playStacks.length + i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Applies the move to a GameState.
+	 *
+	 * @param state
+	 *            The GameState to be changed.
+	 */
+	public void apply(GameState state) {
+		CardStack sourceStack = getStack(state, source);
+		if (isFlip()) {
+			int index = sourceStack.getSize() - 1;
+			if (index >= 0 && sourceStack.isFacingDown(index))
+				sourceStack.flip(index);
+		} else {
+			getStack(state, target).push(sourceStack.pop(count));
+		}
+	}
+
+	/**
+	 * Reverts the move from a GameState to which it was applied, touching
+	 * only the stacks involved in the move.
+	 *
+	 * @param state
+	 *            The GameState to be changed.
+	 */
+	public void revert(GameState state) {
+		CardStack sourceStack = getStack(state, source);
+		if (isFlip()) {
+			int index = sourceStack.getSize() - 1;
+			if (index >= 0 && !sourceStack.isFacingDown(index))
+				sourceStack.flip(index);
+		} else {
+			sourceStack.push(getStack(state, target).pop(count));
+		}
+	}
+
+	@Override
+	/**
+	 * @return String representation of the Move.
+	 */
+	public String toString() {
+		if (isFlip())
+			return "flip " + source;
+		else
+			return count + " from " + source + " to " + target;
+	}
+}
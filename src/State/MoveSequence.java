@@ -0,0 +1,88 @@
+package State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of Moves applied and reverted as a single Move, so the whole
+ * sequence takes up a single entry in the history of the StateManager.
+ *
+ * The source of a MoveSequence is the source of its first Move, its target
+ * the target of its last Move and its count the total number of Cards moved.
+ *
+ * @author Pyck Nicolas
+ */
+public class MoveSequence extends Move {
+
+	private final List<Move> moves;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param moves
+	 *            The Moves of the sequence, in the order of application.
+	 */
+	public MoveSequence(List<Move> moves) {
+		super(first(moves).getSource(), moves.get(moves.size() - 1)
+				.getTarget(), countCards(moves));
+		this.moves = new ArrayList<Move>(moves);
+	}
+
+	private static Move first(List<Move> moves) {
+		if (moves.isEmpty())
+			throw new IllegalArgumentException("Empty move sequence");
+		return moves.get(0);
+	}
+
+	private static int countCards(List<Move> moves) {
+		int count = 0;
+		for (Move move : moves) {
+			count += move.getCount();
+		}
+		return count;
+	}
+
+	/**
+	 * @return An unmodifiable view of the Moves of the sequence.
+	 */
+	public List<Move> getMoves() {
+		return Collections.unmodifiableList(moves);
+	}
+
+	@Override
+	public boolean isFlip() {
+		return false;
+	}
+
+	@Override
+	public long getStackMask() {
+		long mask = 0;
+		for (Move move : moves) {
+			mask |= move.getStackMask();
+		}
+		return mask;
+	}
+
+	@Override
+	public void apply(GameState state) {
+		for (Move move : moves) {
+			move.apply(state);
+		}
+	}
+
+	@Override
+	public void revert(GameState state) {
+		for (int i = moves.size() - 1; i >= 0; i--) {
+			moves.get(i).revert(state);
+		}
+	}
+
+	@Override
+	/**
+	 * @return String representation of the MoveSequence.
+	 */
+	public String toString() {
+		return moves.toString();
+	}
+}
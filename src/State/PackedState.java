@@ -0,0 +1,212 @@
+package State;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import Card.Card;
+import Card.CardStack;
+import Rules.StackRules;
+
+/**
+ * An immutable, bit-packed encoding of a GameState.
+ *
+ * The state is stored as a bit stream in 7 <code>long</code> words: first the
+ * sizes of the 8 play and 4 spare stacks in 6 bits each, followed by every
+ * Card from the bottom of the first play stack to the top of the last spare
+ * stack in 7 bits each (2 bits suit, 4 bits rank and 1 bit facing).
+ *
+ * @author Pyck Nicolas
+ */
+public class PackedState {
+
+	public static final int PLAY_STACKS = 8;
+	public static final int SPARE_STACKS = 4;
+
+	private static final int SIZE_BITS = 6;
+	private static final int CARD_BITS = 7;
+	private static final int MAX_CARDS = 52;
+
+	/**
+	 * Number of <code>long</code> words of an encoded state.
+	 */
+	public static final int WORDS = ((PLAY_STACKS + SPARE_STACKS) * SIZE_BITS
+			+ MAX_CARDS * CARD_BITS + 63) / 64;
+
+	private static final Card.Suit[] SUITS = Card.Suit.values();
+	private static final Card.Rank[] RANKS = Card.Rank.values();
+
+	private final long[] words;
+
+	/**
+	 * Constructor for a PackedState encoding the specified GameState.
+	 *
+	 * @param state
+	 *            The GameState to be encoded.
+	 */
+	public PackedState(GameState state) {
+		words = new long[WORDS];
+
+		CardStack[] playStacks = state.getPlayStacks();
+		CardStack[] spareStacks = state.getSpareStacks();
+
+		int position = 0;
+		for (CardStack stack : playStacks) {
+			position = write(position, stack.getSize(), SIZE_BITS);
+		}
+		for (CardStack stack : spareStacks) {
+			position = write(position, stack.getSize(), SIZE_BITS);
+		}
+
+		for (CardStack stack : playStacks) {
+			position = write(position, stack);
+		}
+		for (CardStack stack : spareStacks) {
+			position = write(position, stack);
+		}
+	}
+
+	private PackedState(long[] words) {
+		this.words = words;
+	}
+
+	/**
+	 * Decodes the PackedState.
+	 *
+	 * @return A new GameState identical to the encoded GameState.
+	 */
+	public GameState unpack() {
+		int[] sizes = new int[PLAY_STACKS + SPARE_STACKS];
+
+		int position = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = (int) read(position, SIZE_BITS);
+			position += SIZE_BITS;
+		}
+
+		CardStack[] playStacks = new CardStack[PLAY_STACKS];
+		for (int i = 0; i < playStacks.length; i++) {
+			playStacks[i] = new CardStack(StackRules.PLAY_RULES);
+			position = read(position, playStacks[i], sizes[i]);
+		}
+
+		CardStack[] spareStacks = new CardStack[SPARE_STACKS];
+		for (int i = 0; i < spareStacks.length; i++) {
+			spareStacks[i] = new CardStack(StackRules.SPARE_RULES);
+			position = read(position, spareStacks[i], sizes[PLAY_STACKS + i]);
+		}
+
+		return new GameState(playStacks, spareStacks);
+	}
+
+	/**
+	 * @return The encoded state as an array of bytes.
+	 */
+	public byte[] toByteArray() {
+		ByteBuffer buffer = ByteBuffer.allocate(WORDS * 8);
+		buffer.asLongBuffer().put(words);
+		return buffer.array();
+	}
+
+	/**
+	 * Restores a PackedState from an array of bytes.
+	 *
+	 * @param bytes
+	 *            The bytes previously returned by {@link #toByteArray()}.
+	 * @return The restored PackedState.
+	 */
+	public static PackedState fromByteArray(byte[] bytes) {
+		if (bytes.length != WORDS * 8)
+			throw new IllegalArgumentException("Invalid PackedState length: "
+					+ bytes.length);
+
+		long[] words = new long[WORDS];
+		ByteBuffer.wrap(bytes).asLongBuffer().get(words);
+		return new PackedState(words);
+	}
+
+	/**
+	 * Copies the encoded state into an array of words.
+	 *
+	 * @param destination
+	 *            The array receiving the <code>WORDS</code> words.
+	 * @param offset
+	 *            The position of the first word in the array.
+	 */
+	public void getWords(long[] destination, int offset) {
+		System.arraycopy(words, 0, destination, offset, WORDS);
+	}
+
+	/**
+	 * Restores a PackedState from an array of words.
+	 *
+	 * @param source
+	 *            The array holding the words previously copied by
+	 *            {@link #getWords(long[], int)}.
+	 * @param offset
+	 *            The position of the first word in the array.
+	 * @return The restored PackedState.
+	 */
+	public static PackedState fromWords(long[] source, int offset) {
+		return new PackedState(Arrays.copyOfRange(source, offset, offset
+				+ WORDS));
+	}
+
+	private int write(int position, CardStack stack) {
+		for (int i = 0; i < stack.getSize(); i++) {
+			Card card = stack.elementAt(i);
+			int code = card.getSuit().ordinal() << 5
+					| card.getRank().ordinal() << 1
+					| (stack.isFacingDown(i) ? 1 : 0);
+			position = write(position, code, CARD_BITS);
+		}
+		return position;
+	}
+
+	private int read(int position, CardStack stack, int size) {
+		for (int i = 0; i < size; i++) {
+			int code = (int) read(position, CARD_BITS);
+			position += CARD_BITS;
+
+			Card.Facing facing = (code & 1) != 0 ? Card.Facing.FaceDown
+					: Card.Facing.FaceUp;
+			stack.push(Card.get(SUITS[code >> 5], RANKS[(code >> 1) & 0xF]),
+					facing);
+		}
+		return position;
+	}
+
+	private int write(int position, long value, int bits) {
+		int word = position >> 6;
+		int shift = position & 63;
+
+		words[word] |= value << shift;
+		if (shift + bits > 64)
+			words[word + 1] |= value >>> (64 - shift);
+
+		return position + bits;
+	}
+
+	private long read(int position, int bits) {
+		int word = position >> 6;
+		int shift = position & 63;
+
+		long value = words[word] >>> shift;
+		if (shift + bits > 64)
+			value |= words[word + 1] << (64 - shift);
+
+		return value & ((1L << bits) - 1);
+	}
+
+	@Override
+	public boolean equals(Object target) {
+		if (target instanceof PackedState)
+			return Arrays.equals(words, ((PackedState) target).words);
+		else
+			return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+}
@@ -0,0 +1,67 @@
+package State;
+
+/**
+ * A change of the current GameState of a StateManager, passed to its
+ * observers as the argument of every notification. The change tells which
+ * stacks may hold different Cards or facings than before, so observers only
+ * need to refresh those stacks.
+ *
+ * Stacks are addressed by a single index: <code>0</code> to <code>7</code>
+ * are the play stacks, <code>8</code> to <code>11</code> the spare stacks.
+ *
+ * @author Pyck Nicolas
+ */
+public class StateChange {
+
+	/**
+	 * A change that may affect every stack, such as a new deal.
+	 */
+	public static final StateChange ALL = new StateChange(-1L);
+
+	private final long stackMask;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param stackMask
+	 *            The bitmask of the changed stacks, bit <code>i</code> being
+	 *            set when the stack with index <code>i</code> changed.
+	 */
+	public StateChange(long stackMask) {
+		this.stackMask = stackMask;
+	}
+
+	/**
+	 * @return The bitmask of the changed stacks.
+	 */
+	public long getStackMask() {
+		return stackMask;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the stack.
+	 * @return <code>true</code> if the stack may have changed,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isChanged(int index) {
+		return (stackMask >>> index & 1) != 0;
+	}
+
+	/**
+	 * @return <code>true</code> if every stack may have changed,
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isFull() {
+		return stackMask == -1L;
+	}
+
+	@Override
+	/**
+	 * @return String representation of the StateChange.
+	 */
+	public String toString() {
+		return isFull() ? "StateChange[all]" : "StateChange["
+				+ Long.toBinaryString(stackMask) + "]";
+	}
+}
@@ -1,39 +1,63 @@
 package State;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
 
 import Card.CardDeck;
 
 /**
- * A GameState Manager class
+ * A GameState Manager class. The StateManager keeps a single current
+ * GameState together with a log of the Moves made since the start of the game
+ * and a PackedState checkpoint every <code>CHECKPOINT_INTERVAL</code> Moves.
+ * Undo and redo revert or reapply a single Move on the current GameState,
+ * touching only the stacks involved in that Move, while
+ * {@link #jumpTo(int)} reaches any point of the history by decoding the
+ * nearest checkpoint and replaying at most <code>CHECKPOINT_INTERVAL</code>
+ * Moves.
+ * 
+ * Observers are notified with a StateChange telling which stacks of the
+ * current GameState changed.
  * 
  * @author Pyck Nicolas
  */
 public class StateManager extends Observable {
 
+	/**
+	 * Number of Moves between two checkpoints.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 32;
+
+	/**
+	 * Number of Moves that costs about as much to replay as decoding a
+	 * checkpoint.
+	 */
+	private static final int UNPACK_COST = 8;
+
+	private BigInteger dealNumber;
 	private int currentStateCounter;
 	private GameState currentState;
-	private List<GameState> states;
+	private List<PackedState> checkpoints;
+	private List<Move> moves;
 
 	public StateManager() {
 		currentStateCounter = -1;
 
-		states = new ArrayList<GameState>();
+		checkpoints = new ArrayList<PackedState>();
+		moves = new ArrayList<Move>();
 	}
 
 	/**
-	 * Sets the current GameState according to the internal currentStateCounter
-	 * and notifies all observers that the current GameState has changed. The
-	 * current GameState object is always a clone of a GameState contained
-	 * within the undo/redo queue.
+	 * Notifies all observers that the current GameState has changed.
+	 * 
+	 * @param change
+	 *            The StateChange telling which stacks changed.
 	 */
-	private void setCurrentState() {
-		currentState = states.get(currentStateCounter).clone();
-
+	private void stateChanged(StateChange change) {
 		setChanged();
-		notifyObservers();
+		notifyObservers(change);
 	}
 
 	/**
@@ -41,34 +65,62 @@ public class StateManager extends Observable {
 	 * notifies all observers that the current GameState has changed.
 	 */
 	public void init() {
-		states.clear();
-
 		CardDeck newDeck = new CardDeck();
 		newDeck.shuffle();
 
+		init(newDeck);
+	}
+
+	/**
+	 * Initializes the StateManager using the deal with the specified number
+	 * and notifies all observers that the current GameState has changed.
+	 * 
+	 * @param dealNumber
+	 *            The deal number, as returned by {@link #getDealNumber()}.
+	 */
+	public void init(BigInteger dealNumber) {
+		init(new CardDeck(dealNumber));
+	}
+
+	private void init(CardDeck newDeck) {
+		checkpoints.clear();
+		moves.clear();
+
+		dealNumber = newDeck.getDealNumber();
+
 		GameState newState = new GameState(newDeck);
-		states.add(newState);
+		checkpoints.add(new PackedState(newState));
 
+		currentState = newState;
 		currentStateCounter = 0;
 
-		setCurrentState();
+		stateChanged(StateChange.ALL);
 	}
 
 	/**
-	 * Adds a clone of the current GameState to the StateManager and notifies
-	 * all observers that the current GameState has changed. All previous
-	 * redoable GameStates are lost at this point
+	 * Records a Move that has just been applied to the current GameState and
+	 * notifies all observers that the current GameState has changed. All
+	 * previous redoable Moves are lost at this point
+	 * 
+	 * @param move
+	 *            The Move applied to the current GameState.
 	 */
-	public void addState() {
-		if (currentStateCounter < (states.size() - 1)) {
-			states = states.subList(0, currentStateCounter + 1);
+	public void addState(Move move) {
+		if (currentStateCounter < moves.size()) {
+			moves.subList(currentStateCounter, moves.size()).clear();
+
+			int lastCheckpoint = currentStateCounter / CHECKPOINT_INTERVAL;
+			checkpoints.subList(lastCheckpoint + 1, checkpoints.size())
+					.clear();
 		}
 
-		states.add(currentState.clone());
+		moves.add(move);
 		currentStateCounter += 1;
 
-		setChanged();
-		notifyObservers();
+		if (currentStateCounter % CHECKPOINT_INTERVAL == 0)
+			checkpoints.add(new PackedState(currentState));
+
+		stateChanged(new StateChange(move.getStackMask()));
 	}
 
 	/**
@@ -90,7 +142,9 @@ public class StateManager extends Observable {
 	public void undo() {
 		if (canUndo()) {
 			currentStateCounter -= 1;
-			setCurrentState();
+			Move move = moves.get(currentStateCounter);
+			move.revert(currentState);
+			stateChanged(new StateChange(move.getStackMask()));
 		}
 	}
 
@@ -103,7 +157,7 @@ public class StateManager extends Observable {
 	 *         after the current GameState.
 	 */
 	public boolean canRedo() {
-		return currentStateCounter < (states.size() - 1);
+		return currentStateCounter < moves.size();
 	}
 
 	/**
@@ -113,22 +167,105 @@ public class StateManager extends Observable {
 	 */
 	public void redo() {
 		if (canRedo()) {
+			Move move = moves.get(currentStateCounter);
+			move.apply(currentState);
 			currentStateCounter += 1;
-			setCurrentState();
+			stateChanged(new StateChange(move.getStackMask()));
 		}
 	}
 
 	/**
 	 * Changes the current GameState to the initial GameState and notifies all
-	 * observers that the current GameState has changed.
+	 * observers that the current GameState has changed. The Moves made remain
+	 * redoable.
 	 */
 	public void reset() {
 		if (currentStateCounter > 0) {
-			currentStateCounter = 0;
-			setCurrentState();
+			jumpTo(0);
 		}
 	}
 
+	/**
+	 * Changes the current GameState to the GameState after the specified
+	 * number of Moves and notifies all observers once that the current
+	 * GameState has changed. The current GameState is either reached by
+	 * reverting or reapplying Moves, or replaced by the nearest preceding
+	 * checkpoint followed by the remaining Moves, whichever is cheaper.
+	 * 
+	 * @param index
+	 *            The number of Moves, from <code>0</code> up to
+	 *            {@link #getMoveCount()}.
+	 */
+	public void jumpTo(int index) {
+		if (index < 0 || index > moves.size())
+			throw new IndexOutOfBoundsException("Move index " + index
+					+ " outside 0.." + moves.size());
+		if (index == currentStateCounter)
+			return;
+
+		long stackMask = 0;
+		int checkpoint = index / CHECKPOINT_INTERVAL;
+		int replayCost = UNPACK_COST + index - checkpoint
+				* CHECKPOINT_INTERVAL;
+		if (Math.abs(index - currentStateCounter) > replayCost) {
+			currentState = checkpoints.get(checkpoint).unpack();
+			currentStateCounter = checkpoint * CHECKPOINT_INTERVAL;
+			stackMask = StateChange.ALL.getStackMask();
+		}
+
+		while (currentStateCounter > index) {
+			currentStateCounter -= 1;
+			Move move = moves.get(currentStateCounter);
+			move.revert(currentState);
+			stackMask |= move.getStackMask();
+		}
+		while (currentStateCounter < index) {
+			Move move = moves.get(currentStateCounter);
+			move.apply(currentState);
+			currentStateCounter += 1;
+			stackMask |= move.getStackMask();
+		}
+
+		stateChanged(new StateChange(stackMask));
+	}
+
+	/**
+	 * @return The number of Moves in the history, including redoable Moves.
+	 */
+	public int getMoveCount() {
+		return moves.size();
+	}
+
+	/**
+	 * @return The number of Moves made to reach the current GameState.
+	 */
+	public int getMoveIndex() {
+		return currentStateCounter;
+	}
+
+	/**
+	 * @return An unmodifiable view of the Moves in the history, including
+	 *         redoable Moves.
+	 */
+	public List<Move> getMoves() {
+		return Collections.unmodifiableList(moves);
+	}
+
+	/**
+	 * @return The deal number of the current game.
+	 */
+	public BigInteger getDealNumber() {
+		return dealNumber;
+	}
+
+	/**
+	 * @return The initial GameState of the current game, decoded from its
+	 *         PackedState.
+	 */
+	public GameState getInitialState() {
+		return checkpoints.get(0).unpack();
+	}
+
 	/**
 	 * @return The current GameState object.
 	 */